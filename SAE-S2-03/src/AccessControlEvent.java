@@ -0,0 +1,20 @@
+import jdk.jfr.*;
+
+// Événement JFR émis pour chaque décision du contrôle d'accès par adresse IP
+@Name("myweb.AccessControl")
+@Label("Access Control Decision")
+@Category({"MyWeb", "Security"})
+@Description("Décision d'acceptation ou de rejet d'une adresse IP")
+@StackTrace(false)
+@Threshold("0 ms")
+public class AccessControlEvent extends Event {
+    @Label("Client")
+    String clientAddress;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    @Label("Rule")
+    @Description("Règle appliquée, ou \"default\" si aucune règle ne correspond")
+    String rule;
+}
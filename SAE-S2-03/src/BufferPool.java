@@ -0,0 +1,178 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pool de ByteBuffer directs réutilisables pour les entrées/sorties réseau.
+// Les tampons sont découpés dans des blocs (slabs) par classe de taille, avec un petit
+// cache par thread devant une réserve commune. Un tampon emprunté avec acquire() doit être
+// rendu avec release() avant la fin du traitement qui l'a demandé.
+public class BufferPool {
+    public static final int SMALL = 4 * 1024;
+    public static final int MEDIUM = 16 * 1024;
+    public static final int LARGE = 64 * 1024;
+
+    private static final int[] SIZE_CLASSES = {SMALL, MEDIUM, LARGE};
+    private static final int BUFFERS_PER_SLAB = 16;
+    private static final int THREAD_CACHE_SIZE = 4;
+
+    private static final SizeClass[] CLASSES = new SizeClass[SIZE_CLASSES.length];
+    static {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            CLASSES[i] = new SizeClass(SIZE_CLASSES[i]);
+        }
+    }
+
+    private static final ThreadLocal<ArrayDeque<ByteBuffer>[]> THREAD_CACHES = ThreadLocal.withInitial(() -> {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<ByteBuffer>[] caches = new ArrayDeque[SIZE_CLASSES.length];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+        }
+        return caches;
+    });
+
+    // Mode debug : chaque emprunt garde la trace de son appelant pour détecter les fuites
+    private static volatile boolean debug = false;
+    private static final Map<ByteBuffer, Lease> leases = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public static void setDebug(boolean enabled) {
+        debug = enabled;
+        if (!enabled) {
+            leases.clear();
+        }
+    }
+
+    public static ByteBuffer acquire(int minCapacity) {
+        int index = classIndex(minCapacity);
+        if (index < 0) {
+            // Plus grand que la plus grande classe : tampon hors pool
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+
+        SizeClass sizeClass = CLASSES[index];
+        ByteBuffer buffer = THREAD_CACHES.get()[index].pollFirst();
+        if (buffer == null) {
+            buffer = sizeClass.free.poll();
+        }
+        if (buffer == null) {
+            buffer = sizeClass.allocateSlab();
+        }
+        sizeClass.inUse.incrementAndGet();
+        sizeClass.acquisitions.incrementAndGet();
+
+        buffer.clear();
+        if (debug) {
+            leases.put(buffer, new Lease(Thread.currentThread(), new Throwable("Tampon emprunté ici")));
+        }
+        return buffer;
+    }
+
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+
+        int index = classIndex(buffer.capacity());
+        if (index < 0 || SIZE_CLASSES[index] != buffer.capacity() || !buffer.isDirect()) {
+            // Tampon hors pool, laissé au ramasse-miettes
+            return;
+        }
+
+        if (debug && leases.remove(buffer) == null) {
+            System.err.println("[tampons] Tampon rendu deux fois ou inconnu du pool");
+            new Throwable("Tampon rendu ici").printStackTrace();
+            return;
+        }
+
+        SizeClass sizeClass = CLASSES[index];
+        sizeClass.inUse.decrementAndGet();
+        ArrayDeque<ByteBuffer> cache = THREAD_CACHES.get()[index];
+        if (cache.size() < THREAD_CACHE_SIZE) {
+            cache.addFirst(buffer);
+        } else {
+            sizeClass.free.offer(buffer);
+        }
+    }
+
+    // Le tampon est confié à un autre thread (connexion gardée ouverte par un autre composant) :
+    // il ne compte plus dans les fuites du thread qui l'a emprunté.
+    public static void detach(ByteBuffer buffer) {
+        if (!debug || buffer == null) return;
+        synchronized (leases) {
+            Lease lease = leases.get(buffer);
+            if (lease != null) {
+                leases.put(buffer, new Lease(null, lease.site));
+            }
+        }
+    }
+
+    // Tampons encore empruntés par le thread courant (mode debug uniquement).
+    // Ils sont considérés perdus : le pool ne les réutilisera pas.
+    public static List<String> checkLeaks() {
+        if (!debug) return Collections.emptyList();
+
+        List<String> leaks = new ArrayList<>();
+        Thread current = Thread.currentThread();
+        synchronized (leases) {
+            Iterator<Map.Entry<ByteBuffer, Lease>> it = leases.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<ByteBuffer, Lease> entry = it.next();
+                if (entry.getValue().owner == current) {
+                    StringWriter trace = new StringWriter();
+                    entry.getValue().site.printStackTrace(new PrintWriter(trace));
+                    leaks.add("Fuite d'un tampon de " + entry.getKey().capacity() + " octets: " + trace);
+                    CLASSES[classIndex(entry.getKey().capacity())].inUse.decrementAndGet();
+                    it.remove();
+                }
+            }
+        }
+        return leaks;
+    }
+
+    // Métriques d'occupation
+    public static int[] getSizeClasses() { return SIZE_CLASSES.clone(); }
+    public static long getAllocated(int size) { return CLASSES[classIndex(size)].allocated.get(); }
+    public static long getInUse(int size) { return CLASSES[classIndex(size)].inUse.get(); }
+    public static long getAcquisitions(int size) { return CLASSES[classIndex(size)].acquisitions.get(); }
+
+    private static int classIndex(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (capacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class SizeClass {
+        private final int size;
+        private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        private final AtomicLong allocated = new AtomicLong();
+        private final AtomicLong inUse = new AtomicLong();
+        private final AtomicLong acquisitions = new AtomicLong();
+
+        SizeClass(int size) {
+            this.size = size;
+        }
+
+        // Alloue un bloc et le découpe : un tampon est retourné, les autres vont dans la réserve
+        ByteBuffer allocateSlab() {
+            ByteBuffer slab = ByteBuffer.allocateDirect(size * BUFFERS_PER_SLAB);
+            for (int i = 1; i < BUFFERS_PER_SLAB; i++) {
+                free.offer(slab.slice(i * size, size));
+            }
+            allocated.addAndGet(BUFFERS_PER_SLAB);
+            return slab.slice(0, size);
+        }
+    }
+
+    private static class Lease {
+        private final Thread owner;
+        private final Throwable site;
+
+        Lease(Thread owner, Throwable site) {
+            this.owner = owner;
+            this.site = site;
+        }
+    }
+}
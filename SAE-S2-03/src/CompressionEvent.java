@@ -0,0 +1,21 @@
+import jdk.jfr.*;
+
+// Événement JFR émis pour chaque compression gzip d'une réponse
+@Name("myweb.Compression")
+@Label("Response Compression")
+@Category({"MyWeb", "HTTP"})
+@Description("Compression gzip du corps d'une réponse")
+@StackTrace(false)
+@Threshold("1 ms")
+public class CompressionEvent extends Event {
+    @Label("Content Type")
+    String contentType;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputSize;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputSize;
+}
@@ -0,0 +1,78 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+// Surveille myweb.conf et déclenche un rechargement quand il est modifié.
+// Les éditeurs écrivent souvent le fichier en plusieurs fois : on attend que les
+// modifications cessent un court instant avant de recharger.
+public class ConfigWatcher {
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final Path configFile;
+    private final Runnable onChange;
+    private final ScheduledExecutorService scheduler;
+    private WatchService watchService;
+    private ScheduledFuture<?> pending;
+
+    public ConfigWatcher(Path configFile, Runnable onChange, ScheduledExecutorService scheduler) {
+        this.configFile = configFile.toAbsolutePath().normalize();
+        this.onChange = onChange;
+        this.scheduler = scheduler;
+    }
+
+    public void start() throws IOException {
+        Path dir = configFile.getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this::watchLoop, "myweb-configwatch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignorer
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || (context instanceof Path && configFile.getFileName().equals(context))) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                scheduleReload();
+            }
+
+            if (!key.reset()) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void scheduleReload() {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = scheduler.schedule(onChange, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
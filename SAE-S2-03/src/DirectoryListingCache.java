@@ -0,0 +1,207 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DirectoryListingCache {
+    // Nombre maximal de répertoires gardés en mémoire
+    private static final int MAX_DIRECTORIES = 256;
+
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    // Incrémenté à chaque invalidation, pour ne pas mettre en cache un listing devenu obsolète pendant sa lecture
+    private final AtomicLong invalidations = new AtomicLong();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public DirectoryListingCache() {
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.watchThread = new Thread(this::watchLoop, "myweb-dirwatch");
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        } catch (IOException e) {
+            // Sans surveillance on ne peut pas invalider le cache : on relit le répertoire à chaque requête
+            System.err.println("[cache] WatchService indisponible, cache des listings désactivé: " + e.getMessage());
+            this.watchService = null;
+        }
+    }
+
+    public Listing getListing(Path dirPath) throws IOException {
+        Path dir = dirPath.toAbsolutePath().normalize();
+
+        Listing listing = listings.get(dir);
+        if (listing != null) {
+            return listing;
+        }
+
+        if (watchService == null) {
+            return readDirectory(dir);
+        }
+
+        long before = invalidations.get();
+        // Enregistrer la surveillance avant la lecture pour ne rater aucune modification
+        WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, dir);
+
+        listing = readDirectory(dir);
+
+        if (listings.size() >= MAX_DIRECTORIES) {
+            evictOne();
+        }
+        listings.put(dir, listing);
+
+        // Une modification est arrivée pendant la lecture : ne pas garder ce résultat
+        if (invalidations.get() != before) {
+            listings.remove(dir, listing);
+        }
+        // Clé annulée par watchLoop entre l'enregistrement et le put : plus rien n'invaliderait ce listing
+        if (!key.isValid()) {
+            listings.remove(dir, listing);
+            watchedDirectories.remove(key, dir);
+        }
+        return listing;
+    }
+
+    public void close() {
+        listings.clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignorer
+            }
+        }
+    }
+
+    private Listing readDirectory(Path dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    entries.add(new Entry(path.getFileName().toString(), attrs.isDirectory(),
+                            attrs.size(), attrs.lastModifiedTime().toMillis()));
+                } catch (IOException e) {
+                    // Fichier supprimé entre-temps : l'ignorer
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(entry -> entry.name));
+        return new Listing(dir, entries);
+    }
+
+    private void evictOne() {
+        Iterator<Map.Entry<WatchKey, Path>> it = watchedDirectories.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Path> watched = it.next();
+            if (listings.remove(watched.getValue()) != null) {
+                watched.getKey().cancel();
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            // Le répertoire sera relu et de nouveau surveillé à la prochaine requête
+            invalidations.incrementAndGet();
+            key.cancel();
+            Path dir = watchedDirectories.remove(key);
+            if (dir != null) {
+                listings.remove(dir);
+            }
+        }
+    }
+
+    public static class Entry {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        public Entry(String name, boolean directory, long size, long lastModified) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() { return name; }
+        public boolean isDirectory() { return directory; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
+    }
+
+    public static class Listing {
+        private final Path directory;
+        private final List<Entry> entries;
+        private final String etag;
+        // Vues triées autrement que par nom, calculées à la demande
+        private final Map<String, List<Entry>> sortedViews = new ConcurrentHashMap<>();
+
+        private Listing(Path directory, List<Entry> entries) {
+            this.directory = directory;
+            this.entries = Collections.unmodifiableList(entries);
+            this.etag = computeEtag(entries);
+        }
+
+        public Path getDirectory() { return directory; }
+        public String getEtag() { return etag; }
+        public int size() { return entries.size(); }
+
+        public List<Entry> getEntries(String sort, boolean descending) {
+            if (!sort.equals("size") && !sort.equals("date")) {
+                sort = "name";
+            }
+            String key = sort + (descending ? ":desc" : ":asc");
+            if (key.equals("name:asc")) {
+                return entries;
+            }
+            String sortKey = sort;
+            return sortedViews.computeIfAbsent(key, k -> {
+                Comparator<Entry> comparator;
+                switch (sortKey) {
+                    case "size":
+                        comparator = Comparator.comparingLong(Entry::getSize);
+                        break;
+                    case "date":
+                        comparator = Comparator.comparingLong(Entry::getLastModified);
+                        break;
+                    default:
+                        comparator = Comparator.comparing(Entry::getName);
+                }
+                if (descending) {
+                    comparator = comparator.reversed();
+                }
+                List<Entry> sorted = new ArrayList<>(entries);
+                sorted.sort(comparator);
+                return Collections.unmodifiableList(sorted);
+            });
+        }
+
+        private static String computeEtag(List<Entry> entries) {
+            long hash = 1125899906842597L;
+            for (Entry entry : entries) {
+                hash = 31 * hash + entry.name.hashCode();
+                hash = 31 * hash + (entry.directory ? 1 : 0);
+                hash = 31 * hash + entry.size;
+                hash = 31 * hash + entry.lastModified;
+            }
+            return "\"" + Long.toHexString(hash) + "-" + Integer.toHexString(entries.size()) + "\"";
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ordonnanceur d'émission pour les grosses réponses (vidéos, audio...).
+// Un seul thread envoie les fichiers par morceaux sur des sockets non bloquantes, sous deux
+// limites de débit (par connexion et globale), en file équitable pondérée : chaque transfert
+// reçoit une part du débit proportionnelle à son poids. Les petites réponses ne passent pas
+// par ici et sont écrites directement par les threads du pool, sans attendre les téléchargements.
+// En HTTPS, le fichier passe par un tampon du pool pour être chiffré par TlsChannel au lieu de transferTo.
+public class EgressScheduler {
+    // Poids des transferts : les médias cèdent la place aux autres gros fichiers
+    public static final int MEDIA_WEIGHT = 1;
+    public static final int DEFAULT_WEIGHT = 4;
+
+    private volatile int chunkSize;
+    private volatile long connectionRate;
+    private volatile long globalRate;
+    private volatile boolean limitsChanged = false;
+    private final TokenBucket globalBucket;
+    private volatile WebConfig config;
+
+    private final Selector selector;
+    private final Queue<Transfer> submitted = new ConcurrentLinkedQueue<>();
+    private final List<Transfer> transfers = new ArrayList<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Temps virtuel de la file équitable
+    private double virtualTime = 0;
+
+    private final AtomicLong activeTransfers = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong completedTransfers = new AtomicLong();
+
+    public EgressScheduler(WebConfig config) throws IOException {
+        this.config = config;
+        this.chunkSize = config.getEgressChunkSize();
+        this.connectionRate = config.getEgressConnectionRate();
+        this.globalRate = config.getEgressGlobalRate();
+        this.globalBucket = new TokenBucket(globalRate, chunkSize);
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, "myweb-egress");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Confie le reste de la réponse à l'ordonnanceur. Le canal (la socket, ou le TlsChannel
+    // au-dessus) et le fichier lui appartiennent désormais : il les ferme à la fin du transfert ou en cas d'erreur.
+    public void submit(SocketChannel socket, ByteChannel channel, FileChannel file, long position, long count, int weight, String description) {
+        submitted.offer(new Transfer(socket, channel, file, position, count, weight, description));
+        activeTransfers.incrementAndGet();
+        selector.wakeup();
+    }
+
+    // Nouvelles limites après un rechargement de la configuration, appliquées aussi aux transferts en cours
+    public void reconfigure(WebConfig config) {
+        this.config = config;
+        this.chunkSize = config.getEgressChunkSize();
+        this.connectionRate = config.getEgressConnectionRate();
+        this.globalRate = config.getEgressGlobalRate();
+        this.limitsChanged = true;
+        selector.wakeup();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public long getActiveTransfers() { return activeTransfers.get(); }
+    public long getBytesSent() { return bytesSent.get(); }
+    public long getCompletedTransfers() { return completedTransfers.get(); }
+
+    private void run() {
+        while (running) {
+            try {
+                registerSubmitted();
+                if (limitsChanged) {
+                    applyLimits();
+                }
+
+                long now = System.nanoTime();
+                globalBucket.refill(now);
+                for (Transfer transfer : transfers) {
+                    transfer.bucket.refill(now);
+                }
+
+                Transfer next = pickNext();
+                if (next != null) {
+                    send(next);
+                    // Prendre en compte les sockets redevenues disponibles sans bloquer
+                    if (selector.selectNow() > 0) {
+                        markWritable();
+                    }
+                    continue;
+                }
+
+                selector.select(waitMillis());
+                markWritable();
+            } catch (IOException | RuntimeException e) {
+                config.logError("Erreur ordonnanceur d'émission: " + e.getMessage());
+            }
+        }
+
+        registerSubmitted();
+        for (Transfer transfer : new ArrayList<>(transfers)) {
+            finish(transfer);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignorer
+        }
+    }
+
+    private void registerSubmitted() {
+        Transfer transfer;
+        while ((transfer = submitted.poll()) != null) {
+            try {
+                transfer.socket.configureBlocking(false);
+                transfer.key = transfer.socket.register(selector, 0, transfer);
+                transfer.finishTag = virtualTime;
+                transfers.add(transfer);
+            } catch (IOException e) {
+                config.logError("Transfert abandonné (" + transfer.description + "): " + e.getMessage());
+                finish(transfer);
+            }
+        }
+    }
+
+    private void applyLimits() {
+        limitsChanged = false;
+        globalBucket.setRate(globalRate, chunkSize);
+        for (Transfer transfer : transfers) {
+            transfer.bucket.setRate(connectionRate, chunkSize);
+        }
+    }
+
+    // Transfert prêt (socket disponible, jetons suffisants) au plus petit temps de fin virtuel
+    private Transfer pickNext() {
+        Transfer best = null;
+        for (Transfer transfer : transfers) {
+            if (!transfer.writable) continue;
+            long quantum = transfer.quantum();
+            if (transfer.bucket.available() < quantum || globalBucket.available() < quantum) continue;
+            if (best == null || transfer.finishTag < best.finishTag) {
+                best = transfer;
+            }
+        }
+        return best;
+    }
+
+    private void send(Transfer transfer) {
+        long quantum = transfer.quantum();
+        try {
+            long n = quantum > 0 ? transfer.write(quantum) : 0;
+            if (n > 0) {
+                transfer.position += n;
+                transfer.remaining -= n;
+                transfer.bucket.consume(n);
+                globalBucket.consume(n);
+                bytesSent.addAndGet(n);
+
+                virtualTime = Math.max(virtualTime, transfer.finishTag);
+                transfer.finishTag = virtualTime + (double) n / transfer.weight;
+            }
+
+            if (transfer.remaining <= 0) {
+                if (transfer.flush()) {
+                    completedTransfers.incrementAndGet();
+                    finish(transfer);
+                } else {
+                    // Dernier enregistrement TLS pas encore parti
+                    waitWritable(transfer);
+                }
+            } else if (n < quantum) {
+                // Tampon d'émission de la socket plein : attendre qu'elle redevienne disponible
+                waitWritable(transfer);
+            }
+        } catch (IOException e) {
+            // Client déconnecté en cours de téléchargement
+            finish(transfer);
+        }
+    }
+
+    private void waitWritable(Transfer transfer) {
+        transfer.writable = false;
+        transfer.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void markWritable() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            Transfer transfer = (Transfer) key.attachment();
+            if (key.isValid() && key.isWritable()) {
+                transfer.writable = true;
+                key.interestOps(0);
+            }
+        }
+    }
+
+    // Attente jusqu'à ce qu'un transfert prêt ait de nouveau assez de jetons (0 = indéfiniment)
+    private long waitMillis() {
+        long waitNanos = Long.MAX_VALUE;
+        for (Transfer transfer : transfers) {
+            if (!transfer.writable) continue;
+            long quantum = transfer.quantum();
+            long nanos = Math.max(transfer.bucket.nanosUntil(quantum), globalBucket.nanosUntil(quantum));
+            waitNanos = Math.min(waitNanos, nanos);
+        }
+        if (waitNanos == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    private void finish(Transfer transfer) {
+        transfers.remove(transfer);
+        activeTransfers.decrementAndGet();
+        if (transfer.key != null) {
+            transfer.key.cancel();
+        }
+        try {
+            transfer.file.close();
+        } catch (IOException e) {
+            // Ignorer
+        }
+        try {
+            transfer.channel.close();
+        } catch (IOException e) {
+            // Ignorer
+        }
+    }
+
+    private class Transfer {
+        private final SocketChannel socket;
+        private final ByteChannel channel;
+        private final FileChannel file;
+        private final int weight;
+        private final String description;
+        private final TokenBucket bucket;
+        private long position;
+        private long remaining;
+        private SelectionKey key;
+        private boolean writable = true;
+        private double finishTag;
+
+        Transfer(SocketChannel socket, ByteChannel channel, FileChannel file, long position, long count, int weight, String description) {
+            this.socket = socket;
+            this.channel = channel;
+            this.file = file;
+            this.position = position;
+            this.remaining = count;
+            this.weight = Math.max(1, weight);
+            this.description = description;
+            this.bucket = new TokenBucket(connectionRate, chunkSize);
+        }
+
+        // En HTTPS, au plus un tampon du pool par envoi
+        long quantum() {
+            long limit = channel == socket ? chunkSize : Math.min(chunkSize, BufferPool.LARGE);
+            return Math.min(limit, remaining);
+        }
+
+        // Octets du fichier acceptés par le canal, 0 si la socket est pleine
+        long write(long quantum) throws IOException {
+            if (channel == socket) {
+                return file.transferTo(position, quantum, socket);
+            }
+
+            ByteBuffer buffer = BufferPool.acquire(BufferPool.LARGE);
+            try {
+                buffer.limit((int) quantum);
+                if (file.read(buffer, position) < 0) {
+                    throw new EOFException("Fichier tronqué pendant l'envoi");
+                }
+                buffer.flip();
+                return channel.write(buffer);
+            } finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+        // Vrai quand tout ce qui a été accepté est parti sur la socket
+        boolean flush() throws IOException {
+            return !(channel instanceof TlsChannel) || ((TlsChannel) channel).flush();
+        }
+    }
+
+    // Seau à jetons : rate octets par seconde, au plus burst octets d'avance (rate 0 = illimité)
+    private static class TokenBucket {
+        private long rate;
+        private long burst;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(long rate, long burst) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = System.nanoTime();
+        }
+
+        void setRate(long rate, long burst) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = Math.min(tokens, burst);
+        }
+
+        void refill(long now) {
+            if (rate <= 0) return;
+            tokens = Math.min(burst, tokens + (now - lastRefill) * (double) rate / 1_000_000_000L);
+            lastRefill = now;
+        }
+
+        long available() {
+            return rate <= 0 ? Long.MAX_VALUE : (long) tokens;
+        }
+
+        void consume(long n) {
+            if (rate > 0) {
+                tokens -= n;
+            }
+        }
+
+        long nanosUntil(long n) {
+            if (rate <= 0 || tokens >= n) return 0;
+            return (long) ((n - tokens) * 1_000_000_000L / rate) + 1;
+        }
+    }
+}
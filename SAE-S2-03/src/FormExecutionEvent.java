@@ -0,0 +1,28 @@
+import jdk.jfr.*;
+
+// Événement JFR émis pour chaque exécution d'un programme de formulaire
+@Name("myweb.FormExecution")
+@Label("Form Program Execution")
+@Category({"MyWeb", "Process"})
+@Description("Exécution d'un programme externe pour un formulaire")
+@StackTrace(false)
+@Threshold("0 ms")
+public class FormExecutionEvent extends Event {
+    @Label("Program")
+    String program;
+
+    @Label("Exit Code")
+    int exitCode;
+
+    @Label("Spawn Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long spawnTime;
+
+    @Label("Run Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long runTime;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputSize;
+}
@@ -0,0 +1,83 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Compression gzip d'un fichier vers la sortie HTTP, par morceaux, avec des tampons du pool.
+// Remplace GZIPOutputStream + ByteArrayOutputStream : rien n'est gardé en mémoire en entier.
+public class GzipEncoder {
+    // En-tête gzip minimal : magic, méthode deflate, pas de drapeaux ni de date
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    // Le Deflater garde de la mémoire native : un par thread, réinitialisé à chaque usage
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() ->
+            new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<CRC32> CRCS = ThreadLocal.withInitial(CRC32::new);
+    private static final byte[] NO_INPUT = new byte[0];
+
+    // Retourne la taille compressée en octets
+    public static long compress(FileChannel file, HttpOutput out) throws IOException {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        CRC32 crc = CRCS.get();
+        crc.reset();
+
+        ByteBuffer input = BufferPool.acquire(BufferPool.LARGE);
+        ByteBuffer output = BufferPool.acquire(BufferPool.MEDIUM);
+        try {
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            long compressedSize = GZIP_HEADER.length;
+            long inputSize = 0;
+
+            while (true) {
+                input.clear();
+                int n = file.read(input);
+                if (n < 0) break;
+                input.flip();
+
+                input.mark();
+                crc.update(input);
+                input.reset();
+                inputSize += n;
+
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    compressedSize += deflateTo(deflater, output, out);
+                }
+                // Le tampon va être réutilisé pour la lecture suivante
+                deflater.setInput(NO_INPUT);
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressedSize += deflateTo(deflater, output, out);
+            }
+
+            // Pied de page gzip : CRC32 et taille d'origine, en little-endian
+            writeIntLE(out, (int) crc.getValue());
+            writeIntLE(out, (int) inputSize);
+            return compressedSize + 8;
+        } finally {
+            // Ne pas garder de référence vers un tampon rendu au pool
+            deflater.setInput(NO_INPUT);
+            BufferPool.release(input);
+            BufferPool.release(output);
+        }
+    }
+
+    private static int deflateTo(Deflater deflater, ByteBuffer output, HttpOutput out) throws IOException {
+        output.clear();
+        int n = deflater.deflate(output);
+        output.flip();
+        out.write(output);
+        return n;
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 24) & 0xFF);
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Lecture d'une requête HTTP depuis un canal, à travers un tampon du pool
+public class HttpInput implements Closeable {
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+
+    public HttpInput(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = BufferPool.acquire(BufferPool.MEDIUM);
+        this.buffer.flip(); // vide, en mode lecture
+    }
+
+    // Lit une ligne terminée par LF (le CR éventuel est retiré), null en fin de flux.
+    // Les en-têtes HTTP sont en ISO-8859-1 : chaque octet donne un caractère.
+    public String readLine() throws IOException {
+        int scanFrom = buffer.position();
+        while (true) {
+            for (int i = scanFrom; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    int end = i;
+                    if (end > buffer.position() && buffer.get(end - 1) == '\r') {
+                        end--;
+                    }
+                    String line = decodeLatin1(buffer.position(), end);
+                    buffer.position(i + 1);
+                    return line;
+                }
+            }
+
+            if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                throw new IOException("Ligne de requête trop longue");
+            }
+
+            scanFrom = buffer.remaining();
+            if (fill() < 0) {
+                if (!buffer.hasRemaining()) {
+                    return null;
+                }
+                String line = decodeLatin1(buffer.position(), buffer.limit());
+                buffer.position(buffer.limit());
+                return line;
+            }
+        }
+    }
+
+    // Lit exactement len octets (corps de la requête)
+    public void readFully(byte[] dst, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining() && fill() < 0) {
+                throw new EOFException("Corps de la requête incomplet");
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(dst, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() {
+        BufferPool.release(buffer);
+        buffer = null;
+    }
+
+    // Déplace les octets non lus au début du tampon et lit la suite depuis le canal
+    private int fill() throws IOException {
+        buffer.compact();
+        try {
+            return channel.read(buffer);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private String decodeLatin1(int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = (char) (buffer.get(i) & 0xFF);
+        }
+        return new String(chars);
+    }
+}
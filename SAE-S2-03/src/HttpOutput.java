@@ -0,0 +1,200 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Écriture d'une réponse HTTP vers un canal, à travers un tampon direct du pool.
+// En mode chunked, chaque vidage du tampon devient un bloc "Transfer-Encoding: chunked".
+public class HttpOutput extends OutputStream {
+    // Place réservée en tête du tampon pour la taille du bloc ("ffff\r\n" au plus)
+    private static final int CHUNK_HEADER_SPACE = 8;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    // Un encodeur UTF-8 par thread, réutilisé d'une requête à l'autre
+    private static final ThreadLocal<CharsetEncoder> UTF8_ENCODERS = ThreadLocal.withInitial(() ->
+            StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private boolean chunked = false;
+    private long bytesWritten = 0;
+
+    public HttpOutput(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = BufferPool.acquire(BufferPool.MEDIUM);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void write(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(src.remaining(), buffer.remaining());
+            buffer.put(buffer.position(), src, src.position(), n);
+            buffer.position(buffer.position() + n);
+            src.position(src.position() + n);
+        }
+    }
+
+    // Texte encodé en UTF-8 directement dans le tampon
+    public void print(CharSequence text) throws IOException {
+        CharsetEncoder encoder = UTF8_ENCODERS.get();
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+    }
+
+    // Envoie une partie d'un fichier sans passer par le tampon (sendfile quand le système le permet)
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        if (chunked) {
+            throw new IllegalStateException("transferFrom n'est pas disponible en mode chunked");
+        }
+        flushBuffer();
+        while (count > 0) {
+            long n = file.transferTo(position, count, channel);
+            if (n <= 0) {
+                throw new EOFException("Fichier tronqué pendant l'envoi");
+            }
+            position += n;
+            count -= n;
+            bytesWritten += n;
+        }
+    }
+
+    // Les écritures suivantes sont envoyées en "Transfer-Encoding: chunked"
+    public void beginChunked() throws IOException {
+        flushBuffer();
+        chunked = true;
+        resetBuffer();
+    }
+
+    public void endChunked() throws IOException {
+        flushBuffer();
+        chunked = false;
+        resetBuffer();
+        write(LAST_CHUNK, 0, LAST_CHUNK.length);
+        flushBuffer();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) return;
+        try {
+            flushBuffer();
+        } finally {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // Nombre d'octets du texte une fois encodé en UTF-8, pour Content-Length
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (!chunked) {
+            buffer.flip();
+            writeFully(buffer);
+            resetBuffer();
+            return;
+        }
+
+        int length = buffer.position() - CHUNK_HEADER_SPACE;
+        if (length == 0) {
+            resetBuffer();
+            return;
+        }
+
+        // Taille du bloc en hexadécimal, juste avant les données
+        int start = CHUNK_HEADER_SPACE - 2;
+        buffer.put(start, (byte) '\r').put(start + 1, (byte) '\n');
+        int remaining = length;
+        do {
+            buffer.put(--start, HEX_DIGITS[remaining & 0xF]);
+            remaining >>>= 4;
+        } while (remaining > 0);
+
+        buffer.limit(buffer.capacity());
+        buffer.put((byte) '\r').put((byte) '\n');
+        buffer.limit(buffer.position()).position(start);
+        writeFully(buffer);
+        resetBuffer();
+    }
+
+    private void resetBuffer() {
+        buffer.clear();
+        if (chunked) {
+            // Garder la place de l'en-tête du bloc et du CRLF final
+            buffer.position(CHUNK_HEADER_SPACE).limit(buffer.capacity() - 2);
+        }
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            bytesWritten += channel.write(src);
+        }
+    }
+}
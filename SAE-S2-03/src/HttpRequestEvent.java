@@ -0,0 +1,26 @@
+import jdk.jfr.*;
+
+// Événement JFR émis pour chaque requête HTTP traitée
+@Name("myweb.HttpRequest")
+@Label("HTTP Request")
+@Category({"MyWeb", "HTTP"})
+@Description("Requête HTTP traitée par le serveur")
+@StackTrace(false)
+@Threshold("10 ms")
+public class HttpRequestEvent extends Event {
+    @Label("Client")
+    String clientAddress;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    int status;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+}
@@ -1,15 +1,32 @@
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class HttpServer {
-    private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
+    private ServerSocketChannel tlsServerChannel;
+    private TlsContext tlsContext;
     private ExecutorService threadPool;
-    private WebConfig config;
+    // Configuration courante et routes compilées, remplacées ensemble à chaque rechargement
+    private final AtomicReference<ConfigSnapshot> current = new AtomicReference<>();
+    private String configFile;
+    private ConfigWatcher configWatcher;
+    private ScheduledExecutorService housekeeping;
     private SystemInfo systemInfo;
+    private DirectoryListingCache listingCache;
+    private EgressScheduler egressScheduler;
+    private StatusStream statusStream;
+    // Instances des gestionnaires, conservées d'un rechargement à l'autre avec leur état
+    private final Map<String, WebHandler> handlerInstances = new ConcurrentHashMap<>();
+    private List<WebHandler> serviceHandlers;
     private boolean running = false;
 
     // Types MIME supportés
@@ -36,9 +53,36 @@ public class HttpServer {
             "jpg", "jpeg", "png", "gif", "mp3", "wav", "mp4", "pdf"
     ));
 
+    // Taille de page par défaut quand le listing est paginé (?page=N)
+    private static final int DEFAULT_LISTING_PAGE_SIZE = 1000;
+
+    // Taille maximale acceptée pour le corps d'une requête POST
+    private static final int MAX_POST_SIZE = 1024 * 1024;
+
+    // Flux Server-Sent Events des métriques, servi hors du pool de threads (voir StreamHandler)
+    private static final String STATUS_STREAM_PATH = "/status/stream";
+
+    // Une ancienne configuration est fermée quand sa dernière requête se termine ;
+    // ce délai ne sert que de garde-fou si une requête ne se termine jamais
+    private static final long OLD_CONFIG_MAX_SECONDS = 3600;
+
     public HttpServer() {
         this.threadPool = Executors.newFixedThreadPool(10);
         this.systemInfo = new SystemInfo();
+        this.listingCache = new DirectoryListingCache();
+        this.housekeeping = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "myweb-housekeeping");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int size : BufferPool.getSizeClasses()) {
+            String name = (size / 1024) + "k";
+            systemInfo.addServerMetric("buffers." + name + ".inUse", "Tampons " + name + " utilisés",
+                    () -> BufferPool.getInUse(size));
+            systemInfo.addServerMetric("buffers." + name + ".allocated", "Tampons " + name + " alloués",
+                    () -> BufferPool.getAllocated(size));
+        }
     }
 
     public static void main(String[] args) {
@@ -59,27 +103,205 @@ public class HttpServer {
     }
 
     private void loadConfiguration(String configFile) throws Exception {
-        this.config = new WebConfig(configFile);
+        this.configFile = configFile;
+        WebConfig config = new WebConfig(configFile);
+        BufferPool.setDebug(config.isBufferDebugEnabled());
+        statusStream = new StatusStream(systemInfo, config);
+        current.set(new ConfigSnapshot(config, buildRouter(config)));
         System.out.println("[serveur] Configuration chargée depuis: " + configFile);
     }
 
+    // Relit myweb.conf sans interrompre les requêtes en cours : chaque requête garde la
+    // configuration lue à son début, les suivantes voient la nouvelle. Les connexions,
+    // le cache des listings et les gestionnaires Java sont conservés.
+    public synchronized boolean reloadConfiguration() {
+        WebConfig oldConfig = current.get().config;
+        WebConfig newConfig;
+        try {
+            newConfig = WebConfig.loadExisting(configFile);
+        } catch (Exception e) {
+            oldConfig.logError("Rechargement de la configuration refusé, l'ancienne reste active: " + e.getMessage());
+            return false;
+        }
+
+        if (newConfig.getPort() != oldConfig.getPort()) {
+            newConfig.logError("Changement de port ignoré jusqu'au prochain redémarrage (" + oldConfig.getPort() + ")");
+        }
+        if (newConfig.getTlsPort() != oldConfig.getTlsPort()
+                || !Objects.equals(newConfig.getTlsKeystore(), oldConfig.getTlsKeystore())) {
+            newConfig.logError("Paramètres TLS ignorés jusqu'au prochain redémarrage");
+        }
+        if (newConfig.isBufferDebugEnabled() != oldConfig.isBufferDebugEnabled()) {
+            newConfig.logError("Le mode debug des tampons ne change qu'au prochain redémarrage");
+        }
+        if (newConfig.isConfigWatchEnabled() != oldConfig.isConfigWatchEnabled()) {
+            newConfig.logError("Surveillance de " + configFile + " inchangée jusqu'au prochain redémarrage");
+        }
+
+        RouteTrie<Route> router = buildRouter(newConfig);
+        if (egressScheduler != null) {
+            egressScheduler.reconfigure(newConfig);
+        }
+        if (statusStream != null) {
+            statusStream.reconfigure(newConfig);
+        }
+        ConfigSnapshot oldSnapshot = current.getAndSet(new ConfigSnapshot(newConfig, router));
+        oldSnapshot.retire();
+        housekeeping.schedule(oldSnapshot::close, OLD_CONFIG_MAX_SECONDS, TimeUnit.SECONDS);
+
+        System.out.println("[serveur] Configuration rechargée depuis: " + configFile);
+        return true;
+    }
+
+    // Routes des gestionnaires Java : page de statut, puis ServiceLoader, puis myweb.conf
+    private RouteTrie<Route> buildRouter(WebConfig config) {
+        RouteTrie<Route> routes = new RouteTrie<>();
+        addRoute(routes, config, "/status", (request, response) -> response.write(systemInfo.getStatusHtml()));
+        addRoute(routes, config, "/admin/reload", this::handleReloadRequest);
+        addRoute(routes, config, STATUS_STREAM_PATH, statusStream);
+
+        // ServiceLoader n'est parcouru qu'une fois : les rechargements réutilisent les mêmes instances
+        if (serviceHandlers == null) {
+            serviceHandlers = new ArrayList<>();
+            try {
+                for (WebHandler handler : ServiceLoader.load(WebHandler.class)) {
+                    serviceHandlers.add(handler);
+                }
+            } catch (ServiceConfigurationError e) {
+                config.logError("Erreur chargement des gestionnaires (ServiceLoader): " + e.getMessage());
+            }
+        }
+        for (WebHandler handler : serviceHandlers) {
+            for (String route : handler.getRoutes()) {
+                addRoute(routes, config, route, handler);
+            }
+        }
+
+        for (WebConfig.HandlerMount mount : config.getHandlerMounts()) {
+            try {
+                WebHandler handler = handlerInstances.get(mount.getClassName());
+                if (handler == null) {
+                    handler = (WebHandler) Class.forName(mount.getClassName()).getDeclaredConstructor().newInstance();
+                    handlerInstances.put(mount.getClassName(), handler);
+                }
+                addRoute(routes, config, mount.getPath(), handler);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                config.logError("Gestionnaire " + mount.getClassName() + " non chargé: " + e);
+            }
+        }
+
+        System.out.println("[serveur] " + routes.size() + " route(s) de gestionnaires Java");
+        return routes;
+    }
+
+    // POST /admin/reload, accepté uniquement depuis la machine locale
+    private void handleReloadRequest(WebRequest request, WebResponse response) throws IOException {
+        response.setContentType("text/plain; charset=utf-8");
+        if (!InetAddress.getByName(request.getClientIP()).isLoopbackAddress()) {
+            response.setStatus(403);
+            response.write("Rechargement autorisé uniquement depuis la machine locale\n");
+            return;
+        }
+        if (!request.getMethod().equals("POST")) {
+            response.setStatus(405);
+            response.setHeader("Allow", "POST");
+            return;
+        }
+
+        if (reloadConfiguration()) {
+            response.write("Configuration rechargée\n");
+        } else {
+            response.setStatus(500);
+            response.write("Échec du rechargement, voir le journal d'erreurs\n");
+        }
+    }
+
+    private void addRoute(RouteTrie<Route> routes, WebConfig config, String path, WebHandler handler) {
+        addRoute(routes, config, path, new Route(handler, null));
+    }
+
+    private void addRoute(RouteTrie<Route> routes, WebConfig config, String path, StreamHandler stream) {
+        addRoute(routes, config, path, new Route(null, stream));
+    }
+
+    private void addRoute(RouteTrie<Route> routes, WebConfig config, String path, Route route) {
+        try {
+            routes.add(path, route);
+        } catch (IllegalArgumentException e) {
+            config.logError("Route ignorée: " + e.getMessage());
+        }
+    }
+
     public void start() throws IOException {
-        serverSocket = new ServerSocket(config.getPort());
+        WebConfig config = current.get().config;
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.getPort()));
         running = true;
 
+        // Toujours démarré : un rechargement peut activer le seuil
+        egressScheduler = new EgressScheduler(config);
+        systemInfo.addServerMetric("egress.active", "Téléchargements en cours", egressScheduler::getActiveTransfers);
+        systemInfo.addServerMetric("egress.completed", "Téléchargements terminés", egressScheduler::getCompletedTransfers);
+        systemInfo.addServerMetric("egress.bytes", "Octets envoyés par l'ordonnanceur", egressScheduler::getBytesSent);
+
+        systemInfo.addServerMetric("status.subscribers", "Abonnés à " + STATUS_STREAM_PATH, statusStream::getSubscribers);
+        // Hors du flux : ce compteur change à chaque envoi et produirait un delta à chaque échantillon
+        systemInfo.addServerMetric("status.events", "Événements envoyés sur " + STATUS_STREAM_PATH, statusStream::getEventsSent, false);
+
+        if (config.isConfigWatchEnabled()) {
+            configWatcher = new ConfigWatcher(Paths.get(configFile), this::reloadConfiguration, housekeeping);
+            try {
+                configWatcher.start();
+            } catch (IOException e) {
+                config.logError("Surveillance de " + configFile + " impossible: " + e.getMessage());
+            }
+        }
+
+        if (config.getTlsPort() > 0) {
+            startTlsListener(config);
+        }
+
         // Créer le fichier PID
         createPidFile();
 
         System.out.println("[serveur] Serveur démarré sur le port " + config.getPort());
         System.out.println("[serveur] DocumentRoot: " + config.getDocumentRoot());
 
+        acceptLoop(serverChannel, null);
+    }
+
+    // Port HTTPS sur son propre thread d'acceptation ; la négociation se fait dans le pool
+    private void startTlsListener(WebConfig config) {
+        try {
+            tlsContext = new TlsContext(config);
+            tlsServerChannel = ServerSocketChannel.open();
+            tlsServerChannel.bind(new InetSocketAddress(config.getTlsPort()));
+        } catch (IOException | java.security.GeneralSecurityException e) {
+            config.logError("HTTPS désactivé: " + e.getMessage());
+            tlsContext = null;
+            return;
+        }
+
+        systemInfo.addServerMetric("tls.full", "Négociations TLS complètes", tlsContext::getFullHandshakes);
+        systemInfo.addServerMetric("tls.resumed", "Négociations TLS reprises (cache ou ticket)", tlsContext::getResumedHandshakes);
+        systemInfo.addServerMetric("tls.failed", "Négociations TLS échouées", tlsContext::getFailedHandshakes);
+        systemInfo.addServerMetric("tls.full.us", "Durée moyenne négociation complète (µs)", tlsContext::getAverageFullHandshakeMicros);
+        systemInfo.addServerMetric("tls.resumed.us", "Durée moyenne négociation reprise (µs)", tlsContext::getAverageResumedHandshakeMicros);
+
+        Thread thread = new Thread(() -> acceptLoop(tlsServerChannel, tlsContext), "myweb-tls-accept");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[serveur] HTTPS sur le port " + config.getTlsPort());
+    }
+
+    private void acceptLoop(ServerSocketChannel channel, TlsContext tls) {
         while (running) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                threadPool.submit(new ClientHandler(clientSocket));
+                SocketChannel clientChannel = channel.accept();
+                threadPool.submit(new ClientHandler(clientChannel, tls));
             } catch (IOException e) {
                 if (running) {
-                    config.logError("Erreur acceptation connexion: " + e.getMessage());
+                    current.get().config.logError("Erreur acceptation connexion: " + e.getMessage());
                 }
             }
         }
@@ -100,10 +322,24 @@ public class HttpServer {
     public void stop() {
         running = false;
         try {
-            if (serverSocket != null) {
-                serverSocket.close();
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            if (tlsServerChannel != null) {
+                tlsServerChannel.close();
             }
             threadPool.shutdown();
+            if (egressScheduler != null) {
+                egressScheduler.stop();
+            }
+            if (statusStream != null) {
+                statusStream.stop();
+            }
+            listingCache.close();
+            if (configWatcher != null) {
+                configWatcher.stop();
+            }
+            housekeeping.shutdown();
 
             // Supprimer le fichier PID
             Files.deleteIfExists(Paths.get("/tmp/var/run/myweb/myweb.pid"));
@@ -112,33 +348,191 @@ public class HttpServer {
         }
     }
 
-    private class ClientHandler implements Runnable {
-        private Socket clientSocket;
+    // Cible d'une route : un gestionnaire qui remplit une réponse, ou un flux qui garde la connexion
+    private static class Route {
+        private final WebHandler handler;
+        private final StreamHandler stream;
+
+        Route(WebHandler handler, StreamHandler stream) {
+            this.handler = handler;
+            this.stream = stream;
+        }
+    }
 
-        public ClientHandler(Socket socket) {
-            this.clientSocket = socket;
+    // Une configuration et les routes construites à partir d'elle, publiées d'un seul bloc.
+    // Compte les requêtes qui l'utilisent : une fois remplacée, ses journaux sont fermés
+    // quand la dernière se termine, pour que ses messages d'erreur et de lenteur ne se perdent pas.
+    private static class ConfigSnapshot {
+        private final WebConfig config;
+        private final RouteTrie<Route> router;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired = false;
+
+        ConfigSnapshot(WebConfig config, RouteTrie<Route> router) {
+            this.config = config;
+            this.router = router;
+        }
+
+        // Faux si la configuration vient d'être remplacée : relire current
+        boolean enter() {
+            inFlight.incrementAndGet();
+            if (retired) {
+                leave();
+                return false;
+            }
+            return true;
+        }
+
+        void leave() {
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (inFlight.get() == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                config.close();
+            }
+        }
+    }
+
+    private class ClientHandler implements Runnable {
+        // Configuration et routes lues une fois au début de la requête, les mêmes jusqu'à la fin
+        private WebConfig config;
+        private RouteTrie<Route> router;
+        private SocketChannel socket;
+        // La socket elle-même, ou le canal chiffré au-dessus en HTTPS
+        private ByteChannel clientChannel;
+        private TlsContext tls;
+        private HttpInput in;
+        private HttpOutput out;
+        private RequestTimer timer = RequestTimer.DISABLED;
+        private long writeBegin = 0;
+        private String clientIP;
+        private String requestLine;
+        private String method;
+        private String path;
+        private int status;
+        // La connexion a été confiée à l'ordonnanceur d'émission ou au flux de statut, qui la fermera
+        private boolean detached = false;
+        private long detachedBytes = 0;
+
+        public ClientHandler(SocketChannel socket, TlsContext tls) {
+            this.socket = socket;
+            this.clientChannel = socket;
+            this.tls = tls;
         }
 
         @Override
         public void run() {
+            ConfigSnapshot snapshot;
+            do {
+                snapshot = current.get();
+            } while (!snapshot.enter());
+            config = snapshot.config;
+            router = snapshot.router;
+            timer = RequestTimer.start(config.isRequestTimingEnabled());
+            HttpRequestEvent event = new HttpRequestEvent();
+            event.begin();
             try {
+                if (tls != null) {
+                    // ACL avant la négociation, l'étape la plus coûteuse : une adresse refusée n'en obtient pas
+                    clientIP = socket.socket().getInetAddress().getHostAddress();
+                    if (!checkAccess()) {
+                        config.logAccess(clientIP + " - FORBIDDEN - négociation TLS refusée");
+                        return;
+                    }
+                    clientChannel = tls.accept(socket);
+                }
+                in = new HttpInput(clientChannel);
+                out = new HttpOutput(clientChannel);
                 handleRequest();
+                out.flush();
             } catch (Exception e) {
                 config.logError("Erreur traitement requête: " + e.getMessage());
             } finally {
+                long bytesWritten = (out != null ? out.getBytesWritten() : 0) + detachedBytes;
+                closeStreams();
+                if (!detached) {
+                    try {
+                        clientChannel.close();
+                    } catch (IOException e) {
+                        // Ignorer
+                    }
+                }
+                // Après la fermeture du canal, qui rend ses propres tampons en HTTPS
+                for (String leak : BufferPool.checkLeaks()) {
+                    config.logError(leak);
+                }
+                if (writeBegin != 0) {
+                    timer.end(RequestTimer.Phase.WRITE, writeBegin);
+                }
+                logIfSlow();
+                event.end();
+                if (event.shouldCommit() && requestLine != null) {
+                    event.clientAddress = clientIP;
+                    event.method = method;
+                    event.path = path;
+                    event.status = status;
+                    event.bytesWritten = bytesWritten;
+                    event.commit();
+                }
+                snapshot.leave();
+            }
+        }
+
+        // Rend les tampons de lecture et d'écriture au pool
+        private void closeStreams() {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
                 try {
-                    clientSocket.close();
+                    out.close();
                 } catch (IOException e) {
-                    // Ignorer
+                    // Client déjà déconnecté
                 }
             }
         }
 
-        private void handleRequest() throws IOException {
-            BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            OutputStream outputStream = clientSocket.getOutputStream();
+        private void logIfSlow() {
+            long threshold = config.getSlowRequestThreshold();
+            if (threshold <= 0 || requestLine == null) return;
 
-            String requestLine = in.readLine();
+            long totalNanos = timer.getTotalNanos();
+            if (totalNanos >= TimeUnit.MILLISECONDS.toNanos(threshold)) {
+                config.logSlowRequest(clientIP + " - " + requestLine + " - " + timer.toLogLine());
+            }
+        }
+
+        // Ligne de statut, suivie de l'en-tête Server-Timing si activé
+        private void printStatusLine(HttpOutput out, String status) throws IOException {
+            this.status = Integer.parseInt(status.substring(0, 3));
+            out.print("HTTP/1.1 " + status + "\r\n");
+            if (config.isServerTimingEnabled()) {
+                out.print("Server-Timing: " + timer.toServerTiming() + "\r\n");
+            }
+            writeBegin = timer.begin();
+        }
+
+        private boolean checkAccess() {
+            long aclBegin = timer.begin();
+            boolean allowed = config.isIPAllowed(clientIP);
+            timer.end(RequestTimer.Phase.ACL, aclBegin);
+            return allowed;
+        }
+
+        private void handleRequest() throws IOException {
+            long parseBegin = timer.begin();
+            requestLine = in.readLine();
             if (requestLine == null) return;
 
             // Lire les en-têtes
@@ -150,12 +544,13 @@ public class HttpServer {
                     headers.put(parts[0].toLowerCase(), parts[1]);
                 }
             }
+            timer.end(RequestTimer.Phase.PARSE, parseBegin);
 
-            String clientIP = clientSocket.getInetAddress().getHostAddress();
+            clientIP = socket.socket().getInetAddress().getHostAddress();
 
-            // Vérifier la sécurité
-            if (!config.isIPAllowed(clientIP)) {
-                sendForbidden(outputStream);
+            // Vérifier la sécurité (déjà fait avant la négociation en HTTPS)
+            if (tls == null && !checkAccess()) {
+                sendForbidden(out);
                 config.logAccess(clientIP + " - FORBIDDEN - " + requestLine);
                 return;
             }
@@ -166,25 +561,65 @@ public class HttpServer {
             String[] parts = requestLine.split(" ");
             if (parts.length < 2) return;
 
-            String method = parts[0];
-            String path = parts[1];
+            method = parts[0];
+            path = parts[1];
+
+            // Les gestionnaires Java passent avant le système de fichiers
+            int queryStart = path.indexOf('?');
+            String routePath = queryStart >= 0 ? path.substring(0, queryStart) : path;
+            RouteTrie.Match<Route> route = router.match(routePath);
+            if (route != null && route.getTarget().stream != null) {
+                if (method.equals("GET")) {
+                    handleStream(route.getTarget().stream, out);
+                } else {
+                    sendMethodNotAllowed(out);
+                }
+                return;
+            }
+            if (route != null) {
+                String queryString = queryStart >= 0 ? path.substring(queryStart + 1) : "";
+                handleWithHandler(route, routePath, queryString, out, headers);
+                return;
+            }
 
             if (method.equals("GET")) {
-                handleGet(path, outputStream, headers);
+                handleGet(path, out, headers);
             } else if (method.equals("POST")) {
-                handlePost(path, outputStream, headers, in);
+                handlePost(path, out, headers);
             } else {
-                sendMethodNotAllowed(outputStream);
+                sendMethodNotAllowed(out);
             }
         }
 
-        private void handleGet(String path, OutputStream outputStream, Map<String, String> headers) throws IOException {
-            // Gérer l'URL de statut
-            if (path.equals("/status")) {
-                sendStatusPage(outputStream);
+        // En-têtes envoyés par ce thread, puis la connexion passe au gestionnaire du flux
+        private void handleStream(StreamHandler stream, HttpOutput out) throws IOException {
+            if (!stream.reserve()) {
+                printStatusLine(out, "503 Service Unavailable");
+                out.print("Retry-After: 30\r\n");
+                out.print("Content-Length: 0\r\n");
+                out.print("\r\n");
                 return;
             }
 
+            try {
+                printStatusLine(out, "200 OK");
+                out.print("Content-Type: " + stream.getContentType() + "\r\n");
+                out.print("Cache-Control: no-cache\r\n");
+                out.print("\r\n");
+                out.flush();
+            } catch (IOException e) {
+                stream.cancelReservation();
+                throw e;
+            }
+
+            if (clientChannel instanceof TlsChannel) {
+                ((TlsChannel) clientChannel).detachBuffers();
+            }
+            stream.subscribe(socket, clientChannel);
+            detached = true;
+        }
+
+        private void handleGet(String path, HttpOutput out, Map<String, String> headers) throws IOException {
             // Traiter les paramètres GET pour les formulaires
             String queryString = "";
             if (path.contains("?")) {
@@ -194,59 +629,115 @@ public class HttpServer {
             }
 
             // Servir les fichiers statiques
-            serveFile(path, outputStream, headers, queryString);
+            serveFile(path, out, headers, queryString);
         }
 
-        private void handlePost(String path, OutputStream outputStream, Map<String, String> headers, BufferedReader in) throws IOException {
+        private void handlePost(String path, HttpOutput out, Map<String, String> headers) throws IOException {
             // Lire le corps de la requête POST
             String contentLengthStr = headers.get("content-length");
-            if (contentLengthStr != null) {
-                int contentLength = Integer.parseInt(contentLengthStr);
-                char[] buffer = new char[contentLength];
-                in.read(buffer, 0, contentLength);
-                String postData = new String(buffer);
+            int contentLength = parseIntParam(contentLengthStr, -1);
+            if (contentLength >= 0 && contentLength <= MAX_POST_SIZE) {
+                String postData = readBody(contentLength);
 
                 // Traiter les données du formulaire
-                handleFormSubmission(path, postData, outputStream);
+                handleFormSubmission(path, postData, out);
             } else {
-                sendBadRequest(outputStream);
+                sendBadRequest(out);
             }
         }
 
-        private void serveFile(String path, OutputStream outputStream, Map<String, String> headers, String queryString) throws IOException {
+        private String readBody(int contentLength) throws IOException {
+            byte[] body = new byte[contentLength];
+            in.readFully(body, 0, contentLength);
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        private void handleWithHandler(RouteTrie.Match<Route> route, String routePath, String queryString, HttpOutput out, Map<String, String> headers) throws IOException {
+            String body = "";
+            String contentLengthStr = headers.get("content-length");
+            if (contentLengthStr != null) {
+                int contentLength = parseIntParam(contentLengthStr, -1);
+                if (contentLength < 0 || contentLength > MAX_POST_SIZE) {
+                    sendBadRequest(out);
+                    return;
+                }
+                body = readBody(contentLength);
+            }
+
+            WebRequest request = new WebRequest(method, routePath, queryString, headers, route.getParams(), body, clientIP);
+            WebResponse response = new WebResponse();
+
+            long handlerBegin = timer.begin();
+            try {
+                route.getTarget().handler.handle(request, response);
+            } catch (Exception e) {
+                config.logError("Erreur gestionnaire " + route.getPattern() + ": " + e);
+                sendInternalServerError(out);
+                return;
+            } finally {
+                timer.end(RequestTimer.Phase.HANDLER, handlerBegin);
+            }
+
+            byte[] responseBody = response.getBody();
+            printStatusLine(out, response.getStatusLine());
+            out.print("Content-Type: " + response.getContentType() + "\r\n");
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                out.print(header.getKey() + ": " + header.getValue() + "\r\n");
+            }
+            out.print("Content-Length: " + responseBody.length + "\r\n");
+            out.print("\r\n");
+            out.write(responseBody);
+            out.flush();
+        }
+
+        private void serveFile(String path, HttpOutput out, Map<String, String> headers, String queryString) throws IOException {
             if (path.equals("/")) {
                 path = "/index.html";
             }
 
             Path filePath = Paths.get(config.getDocumentRoot(), path.substring(1));
 
-            if (Files.exists(filePath) && Files.isRegularFile(filePath)) {
+            long fsBegin = timer.begin();
+            boolean exists = Files.exists(filePath);
+            boolean regularFile = exists && Files.isRegularFile(filePath);
+            boolean directory = exists && !regularFile && Files.isDirectory(filePath);
+            timer.end(RequestTimer.Phase.FILESYSTEM, fsBegin);
+
+            if (regularFile) {
                 String extension = getFileExtension(filePath.toString());
                 String contentType = CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
 
-                byte[] fileContent = Files.readAllBytes(filePath);
                 boolean shouldCompress = COMPRESSIBLE_TYPES.contains(extension) &&
                         acceptsGzip(headers);
 
-                sendFileResponse(outputStream, fileContent, contentType, shouldCompress);
+                fsBegin = timer.begin();
+                FileChannel file = FileChannel.open(filePath, StandardOpenOption.READ);
+                timer.end(RequestTimer.Phase.FILESYSTEM, fsBegin);
+                try {
+                    sendFileResponse(out, file, contentType, shouldCompress);
+                } finally {
+                    if (!detached) {
+                        file.close();
+                    }
+                }
 
-            } else if (Files.exists(filePath) && Files.isDirectory(filePath)) {
+            } else if (directory) {
                 if (config.allowDirectoryListing()) {
-                    sendDirectoryListing(filePath, outputStream);
+                    sendDirectoryListing(filePath, out, headers, queryString);
                 } else {
-                    sendForbidden(outputStream);
+                    sendForbidden(out);
                 }
             } else {
                 // Si c'est une requête de formulaire, essayer d'exécuter le programme
                 if (!queryString.isEmpty()) {
-                    handleFormSubmission(path, queryString, outputStream);
+                    handleFormSubmission(path, queryString, out);
                 } else {
-                    sendNotFound(outputStream);
+                    sendNotFound(out);
                 }
             }
         }
 
-        private void handleFormSubmission(String path, String data, OutputStream outputStream) throws IOException {
+        private void handleFormSubmission(String path, String data, HttpOutput out) throws IOException {
             try {
                 // Exécuter le programme correspondant
                 Path programPath = Paths.get("/tmp/usr/local/lib/myweb", path.substring(1));
@@ -265,7 +756,12 @@ public class HttpServer {
                     }
 
                     pb.command(programPath.toString());
+                    FormExecutionEvent event = new FormExecutionEvent();
+                    event.begin();
+                    long execBegin = timer.begin();
+                    long spawnBegin = System.nanoTime();
                     Process process = pb.start();
+                    long spawned = System.nanoTime();
 
                     // Lire la sortie du programme
                     StringBuilder output = new StringBuilder();
@@ -276,23 +772,32 @@ public class HttpServer {
                         }
                     }
 
-                    process.waitFor();
+                    int exitCode = process.waitFor();
+                    timer.end(RequestTimer.Phase.EXEC, execBegin);
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.program = programPath.toString();
+                        event.exitCode = exitCode;
+                        event.spawnTime = spawned - spawnBegin;
+                        event.runTime = System.nanoTime() - spawned;
+                        event.outputSize = output.length();
+                        event.commit();
+                    }
 
                     // Envoyer la réponse
-                    PrintWriter out = new PrintWriter(outputStream);
-                    out.print("HTTP/1.1 200 OK\r\n");
+                    printStatusLine(out, "200 OK");
                     out.print("Content-Type: text/html; charset=utf-8\r\n");
-                    out.print("Content-Length: " + output.length() + "\r\n");
+                    out.print("Content-Length: " + HttpOutput.utf8Length(output) + "\r\n");
                     out.print("\r\n");
                     out.print(output.toString());
                     out.flush();
 
                 } else {
-                    sendNotFound(outputStream);
+                    sendNotFound(out);
                 }
             } catch (Exception e) {
                 config.logError("Erreur exécution formulaire: " + e.getMessage());
-                sendInternalServerError(outputStream);
+                sendInternalServerError(out);
             }
         }
 
@@ -301,130 +806,249 @@ public class HttpServer {
             return acceptEncoding != null && acceptEncoding.contains("gzip");
         }
 
-        private void sendFileResponse(OutputStream outputStream, byte[] content, String contentType, boolean compress) throws IOException {
-            PrintWriter out = new PrintWriter(outputStream);
+        private void sendFileResponse(HttpOutput out, FileChannel file, String contentType, boolean compress) throws IOException {
+            long size = file.size();
 
-            byte[] responseContent = content;
-            if (compress) {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                try (GZIPOutputStream gzipOut = new GZIPOutputStream(baos)) {
-                    gzipOut.write(content);
-                }
-                responseContent = baos.toByteArray();
+            // Les gros fichiers partent par l'ordonnanceur d'émission, sans compression :
+            // ce sont surtout des médias déjà compressés, et la taille doit être connue
+            boolean scheduled = egressScheduler != null && config.getEgressThreshold() > 0
+                    && size >= config.getEgressThreshold();
 
-                out.print("HTTP/1.1 200 OK\r\n");
+            if (compress && !scheduled) {
+                // Taille compressée inconnue à l'avance : envoi par blocs
+                printStatusLine(out, "200 OK");
                 out.print("Content-Type: " + contentType + "\r\n");
                 out.print("Content-Encoding: gzip\r\n");
-                out.print("Content-Length: " + responseContent.length + "\r\n");
+                out.print("Transfer-Encoding: chunked\r\n");
                 out.print("\r\n");
+                out.beginChunked();
+
+                long gzipBegin = timer.begin();
+                CompressionEvent event = new CompressionEvent();
+                event.begin();
+                long compressedSize = GzipEncoder.compress(file, out);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.contentType = contentType;
+                    event.inputSize = size;
+                    event.outputSize = compressedSize;
+                    event.commit();
+                }
+                timer.end(RequestTimer.Phase.GZIP, gzipBegin);
+                // La compression a écrit au fil de l'eau : la phase write ne compte que ce qui suit
+                writeBegin = timer.begin();
+
+                out.endChunked();
             } else {
-                out.print("HTTP/1.1 200 OK\r\n");
+                printStatusLine(out, "200 OK");
                 out.print("Content-Type: " + contentType + "\r\n");
-                out.print("Content-Length: " + responseContent.length + "\r\n");
+                out.print("Content-Length: " + size + "\r\n");
                 out.print("\r\n");
+
+                if (scheduled) {
+                    out.flush();
+                    int weight = contentType.startsWith("video/") || contentType.startsWith("audio/")
+                            ? EgressScheduler.MEDIA_WEIGHT : EgressScheduler.DEFAULT_WEIGHT;
+                    if (clientChannel instanceof TlsChannel) {
+                        ((TlsChannel) clientChannel).detachBuffers();
+                    }
+                    egressScheduler.submit(socket, clientChannel, file, 0, size, weight, clientIP + " " + path);
+                    detached = true;
+                    detachedBytes = size;
+                    return;
+                }
+                out.transferFrom(file, 0, size);
             }
 
             out.flush();
-            outputStream.write(responseContent);
-            outputStream.flush();
         }
 
-        private void sendDirectoryListing(Path dirPath, OutputStream outputStream) throws IOException {
-            StringBuilder html = new StringBuilder();
-            html.append("<!DOCTYPE html><html><head><title>Index of ").append(dirPath).append("</title></head><body>");
-            html.append("<h1>Index of ").append(dirPath).append("</h1><hr><pre>");
-
+        private void sendDirectoryListing(Path dirPath, HttpOutput out, Map<String, String> headers, String queryString) throws IOException {
+            DirectoryListingCache.Listing listing;
+            long fsBegin = timer.begin();
             try {
-                Files.list(dirPath).sorted().forEach(path -> {
-                    String name = path.getFileName().toString();
-                    if (Files.isDirectory(path)) {
-                        name += "/";
-                    }
-                    html.append("<a href=\"").append(name).append("\">").append(name).append("</a>\n");
-                });
+                listing = listingCache.getListing(dirPath);
+                timer.end(RequestTimer.Phase.FILESYSTEM, fsBegin);
             } catch (IOException e) {
-                html.append("Erreur lors de la lecture du répertoire");
+                config.logError("Erreur lors de la lecture du répertoire " + dirPath + ": " + e.getMessage());
+                sendInternalServerError(out);
+                return;
             }
 
-            html.append("</pre><hr></body></html>");
+            // Le client a déjà la version courante du listing
+            String ifNoneMatch = headers.get("if-none-match");
+            if (ifNoneMatch != null && etagMatches(ifNoneMatch, listing.getEtag())) {
+                printStatusLine(out, "304 Not Modified");
+                out.print("ETag: " + listing.getEtag() + "\r\n");
+                out.print("\r\n");
+                out.flush();
+                return;
+            }
+
+            // Paramètres optionnels : ?sort=name|size|date&order=asc|desc&page=N&size=M
+            Map<String, String> params = parseQueryString(queryString);
+            String sort = params.getOrDefault("sort", "name");
+            boolean descending = "desc".equalsIgnoreCase(params.get("order"));
+            List<DirectoryListingCache.Entry> entries = listing.getEntries(sort, descending);
+
+            int from = 0;
+            int to = entries.size();
+            int page = parseIntParam(params.get("page"), 0);
+            int pageSize = parseIntParam(params.get("size"), page > 0 ? DEFAULT_LISTING_PAGE_SIZE : 0);
+            if (pageSize > 0) {
+                page = Math.max(page, 1);
+                from = (int) Math.min((long) (page - 1) * pageSize, entries.size());
+                to = Math.min(from + pageSize, entries.size());
+            }
 
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 200 OK\r\n");
+            printStatusLine(out, "200 OK");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("ETag: " + listing.getEtag() + "\r\n");
+            out.print("Transfer-Encoding: chunked\r\n");
             out.print("\r\n");
-            out.print(html.toString());
-            out.flush();
-        }
 
-        private void sendStatusPage(OutputStream outputStream) throws IOException {
-            String statusHtml = systemInfo.getStatusHtml();
+            // Le corps est envoyé par blocs au fur et à mesure, sans construire la page en mémoire
+            out.beginChunked();
+            String title = escapeHtml(dirPath.toString());
+            out.print("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Index of " + title + "</title></head><body>");
+            out.print("<h1>Index of " + title + "</h1><hr><pre>");
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MMM-yyyy HH:mm");
+            for (int i = from; i < to; i++) {
+                DirectoryListingCache.Entry entry = entries.get(i);
+                String name = entry.isDirectory() ? entry.getName() + "/" : entry.getName();
+                out.print("<a href=\"" + escapeHtml(encodePathSegment(name)) + "\">" + escapeHtml(name) + "</a>");
+                out.print("  " + dateFormat.format(new Date(entry.getLastModified())));
+                out.print("  " + (entry.isDirectory() ? "-" : String.valueOf(entry.getSize())) + "\n");
+            }
 
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 200 OK\r\n");
-            out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + statusHtml.length() + "\r\n");
-            out.print("\r\n");
-            out.print(statusHtml);
-            out.flush();
+            out.print("</pre><hr>");
+            if (pageSize > 0) {
+                String base = "?sort=" + escapeHtml(encodePathSegment(sort)) + "&amp;order=" + (descending ? "desc" : "asc")
+                        + "&amp;size=" + pageSize + "&amp;page=";
+                if (page > 1) {
+                    out.print("<a href=\"" + base + (page - 1) + "\">&laquo; Précédent</a> ");
+                }
+                if (to < entries.size()) {
+                    out.print("<a href=\"" + base + (page + 1) + "\">Suivant &raquo;</a>");
+                }
+            }
+            out.print("</body></html>");
+            out.endChunked();
         }
 
-        private void sendNotFound(OutputStream outputStream) throws IOException {
+        private void sendNotFound(HttpOutput out) throws IOException {
             String html = "<html><body><h1>404 Not Found</h1><p>La ressource demandée n'a pas été trouvée.</p></body></html>";
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 404 Not Found\r\n");
+            printStatusLine(out, "404 Not Found");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("Content-Length: " + HttpOutput.utf8Length(html) + "\r\n");
             out.print("\r\n");
             out.print(html);
             out.flush();
         }
 
-        private void sendForbidden(OutputStream outputStream) throws IOException {
+        private void sendForbidden(HttpOutput out) throws IOException {
             String html = "<html><body><h1>403 Forbidden</h1><p>Accès interdit.</p></body></html>";
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 403 Forbidden\r\n");
+            printStatusLine(out, "403 Forbidden");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("Content-Length: " + HttpOutput.utf8Length(html) + "\r\n");
             out.print("\r\n");
             out.print(html);
             out.flush();
         }
 
-        private void sendMethodNotAllowed(OutputStream outputStream) throws IOException {
+        private void sendMethodNotAllowed(HttpOutput out) throws IOException {
             String html = "<html><body><h1>405 Method Not Allowed</h1></body></html>";
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 405 Method Not Allowed\r\n");
+            printStatusLine(out, "405 Method Not Allowed");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("Content-Length: " + HttpOutput.utf8Length(html) + "\r\n");
             out.print("\r\n");
             out.print(html);
             out.flush();
         }
 
-        private void sendBadRequest(OutputStream outputStream) throws IOException {
+        private void sendBadRequest(HttpOutput out) throws IOException {
             String html = "<html><body><h1>400 Bad Request</h1></body></html>";
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 400 Bad Request\r\n");
+            printStatusLine(out, "400 Bad Request");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("Content-Length: " + HttpOutput.utf8Length(html) + "\r\n");
             out.print("\r\n");
             out.print(html);
             out.flush();
         }
 
-        private void sendInternalServerError(OutputStream outputStream) throws IOException {
+        private void sendInternalServerError(HttpOutput out) throws IOException {
             String html = "<html><body><h1>500 Internal Server Error</h1></body></html>";
-            PrintWriter out = new PrintWriter(outputStream);
-            out.print("HTTP/1.1 500 Internal Server Error\r\n");
+            printStatusLine(out, "500 Internal Server Error");
             out.print("Content-Type: text/html; charset=utf-8\r\n");
-            out.print("Content-Length: " + html.length() + "\r\n");
+            out.print("Content-Length: " + HttpOutput.utf8Length(html) + "\r\n");
             out.print("\r\n");
             out.print(html);
             out.flush();
         }
     }
 
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Map<String, String> parseQueryString(String queryString) {
+        Map<String, String> params = new HashMap<>();
+        if (queryString == null || queryString.isEmpty()) return params;
+        for (String pair : queryString.split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length == 2) {
+                try {
+                    params.put(keyValue[0], URLDecoder.decode(keyValue[1], "UTF-8"));
+                } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+                    // Paramètre mal encodé : l'ignorer
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int parseIntParam(String value, int defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String encodePathSegment(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace("+", "%20").replace("%2F", "/");
+        } catch (UnsupportedEncodingException e) {
+            return name;
+        }
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
     private String getFileExtension(String filename) {
         int lastDot = filename.lastIndexOf('.');
         if (lastDot == -1) return "";
@@ -0,0 +1,90 @@
+import java.util.Locale;
+
+// Chronométrage des phases d'une requête avec System.nanoTime.
+// Quand la mesure est désactivée, l'instance partagée DISABLED ne fait rien et n'alloue rien.
+public class RequestTimer {
+    public enum Phase {
+        PARSE("parse"),      // lecture de la ligne de requête et des en-têtes
+        ACL("acl"),          // contrôle d'accès par adresse IP
+        FILESYSTEM("fs"),    // accès au système de fichiers
+        GZIP("gzip"),        // compression de la réponse
+        EXEC("exec"),        // programme externe des formulaires
+        HANDLER("handler"),  // gestionnaire Java
+        WRITE("write");      // écriture de la réponse sur la socket
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() { return metricName; }
+    }
+
+    public static final RequestTimer DISABLED = new RequestTimer(false);
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final boolean enabled;
+    private final long startNanos;
+    private final long[] phaseNanos;
+
+    private RequestTimer(boolean enabled) {
+        this.enabled = enabled;
+        this.startNanos = enabled ? System.nanoTime() : 0L;
+        this.phaseNanos = enabled ? new long[PHASES.length] : null;
+    }
+
+    public static RequestTimer start(boolean enabled) {
+        return enabled ? new RequestTimer(true) : DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Début d'une phase : la valeur retournée est à passer à end()
+    public long begin() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void end(Phase phase, long begin) {
+        if (enabled) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - begin;
+        }
+    }
+
+    public long getTotalNanos() {
+        return enabled ? System.nanoTime() - startNanos : 0L;
+    }
+
+    // Valeur de l'en-tête Server-Timing : seules les phases déjà passées apparaissent
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : PHASES) {
+            long nanos = phaseNanos[phase.ordinal()];
+            if (nanos > 0) {
+                header.append(phase.getMetricName())
+                        .append(";dur=").append(formatMillis(nanos))
+                        .append(", ");
+            }
+        }
+        header.append("total;dur=").append(formatMillis(getTotalNanos()));
+        return header.toString();
+    }
+
+    // Détail complet pour le journal des requêtes lentes
+    public String toLogLine() {
+        StringBuilder line = new StringBuilder();
+        line.append("total=").append(formatMillis(getTotalNanos())).append("ms");
+        for (Phase phase : PHASES) {
+            line.append(' ').append(phase.getMetricName()).append('=')
+                    .append(formatMillis(phaseNanos[phase.ordinal()])).append("ms");
+        }
+        return line.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.*;
+
+// Arbre de préfixes des routes des gestionnaires Java, découpé par segment de chemin.
+// Construit une fois au chargement de la configuration puis seulement lu par les requêtes.
+// Priorité à chaque niveau : segment exact, puis segment variable {nom}, puis préfixe *.
+// T est la cible d'une route (voir HttpServer.Route).
+public class RouteTrie<T> {
+    private final Node<T> root = new Node<>();
+    private int size = 0;
+
+    public void add(String pattern, T target) {
+        List<String> segments = split(pattern);
+        Node<T> node = root;
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+
+            if (segment.equals("*")) {
+                if (i != segments.size() - 1) {
+                    throw new IllegalArgumentException("'*' doit terminer la route: " + pattern);
+                }
+                if (node.prefixTarget != null) {
+                    throw new IllegalArgumentException("Route déjà déclarée: " + pattern);
+                }
+                node.prefixTarget = target;
+                node.prefixPattern = pattern;
+                size++;
+                return;
+            }
+
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (node.paramChild == null) {
+                    node.paramChild = new Node<>();
+                    node.paramName = name;
+                } else if (!node.paramName.equals(name)) {
+                    throw new IllegalArgumentException("Conflit entre {" + node.paramName + "} et {" + name + "}: " + pattern);
+                }
+                node = node.paramChild;
+            } else {
+                node = node.children.computeIfAbsent(segment, s -> new Node<>());
+            }
+        }
+
+        if (node.target != null) {
+            throw new IllegalArgumentException("Route déjà déclarée: " + pattern);
+        }
+        node.target = target;
+        node.pattern = pattern;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Route correspondant au chemin (sans la query string), ou null
+    public Match<T> match(String path) {
+        if (size == 0) return null;
+        List<String> segments = split(path);
+        return match(root, segments, 0, new HashMap<>());
+    }
+
+    private Match<T> match(Node<T> node, List<String> segments, int index, Map<String, String> params) {
+        if (index == segments.size()) {
+            if (node.target != null) {
+                return new Match<>(node.target, node.pattern, params);
+            }
+            if (node.prefixTarget != null) {
+                params.put("*", "");
+                return new Match<>(node.prefixTarget, node.prefixPattern, params);
+            }
+            return null;
+        }
+
+        String segment = segments.get(index);
+
+        Node<T> child = node.children.get(segment);
+        if (child != null) {
+            Match<T> match = match(child, segments, index + 1, params);
+            if (match != null) return match;
+        }
+
+        if (node.paramChild != null) {
+            params.put(node.paramName, decode(segment));
+            Match<T> match = match(node.paramChild, segments, index + 1, params);
+            if (match != null) return match;
+            params.remove(node.paramName);
+        }
+
+        if (node.prefixTarget != null) {
+            params.put("*", String.join("/", segments.subList(index, segments.size())));
+            return new Match<>(node.prefixTarget, node.prefixPattern, params);
+        }
+        return null;
+    }
+
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static String decode(String segment) {
+        try {
+            return URLDecoder.decode(segment.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return segment;
+        }
+    }
+
+    public static class Match<T> {
+        private final T target;
+        private final String pattern;
+        private final Map<String, String> params;
+
+        Match(T target, String pattern, Map<String, String> params) {
+            this.target = target;
+            this.pattern = pattern;
+            this.params = params;
+        }
+
+        public T getTarget() { return target; }
+        public String getPattern() { return pattern; }
+        public Map<String, String> getParams() { return params; }
+    }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private Node<T> paramChild;
+        private String paramName;
+        private T target;
+        private String pattern;
+        private T prefixTarget;
+        private String prefixPattern;
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Flux /status/stream en Server-Sent Events.
+// Un seul thread échantillonne SystemInfo à intervalle régulier, encode une fois en JSON les
+// valeurs qui ont changé et écrit ce même message à tous les abonnés, sur des sockets non
+// bloquantes : un tableau de bord ouvert n'occupe aucun thread du pool, et le coût de
+// l'échantillonnage ne dépend pas du nombre d'abonnés. Rien n'est échantillonné sans abonné.
+public class StatusStream implements StreamHandler {
+    // Un abonné qui ne lit plus est déconnecté au-delà de ce retard
+    private static final int MAX_BACKLOG = 64 * 1024;
+    // Commentaire SSE envoyé quand rien ne change, pour repérer les clients partis
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final long MIN_INTERVAL_MILLIS = 100;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SystemInfo systemInfo;
+    private final ScheduledExecutorService sampler;
+    private volatile WebConfig config;
+    private volatile boolean running = true;
+
+    // Réservations comprises : compté dès l'acceptation, avant l'envoi des en-têtes
+    private final AtomicLong subscriberCount = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+
+    // Utilisés uniquement par le thread d'échantillonnage
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private Map<String, Long> lastSample = Collections.emptyMap();
+    private long lastSentAt = 0;
+
+    public StatusStream(SystemInfo systemInfo, WebConfig config) {
+        this.systemInfo = systemInfo;
+        this.config = config;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "myweb-status-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleTick();
+    }
+
+    // Intervalle et nombre maximal d'abonnés lus à chaque usage : un rechargement s'applique tout de suite
+    public void reconfigure(WebConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/event-stream; charset=utf-8";
+    }
+
+    // Faux si maxclients est atteint
+    @Override
+    public boolean reserve() {
+        while (true) {
+            long count = subscriberCount.get();
+            if (count >= config.getStatusStreamMaxClients()) {
+                return false;
+            }
+            if (subscriberCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void cancelReservation() {
+        subscriberCount.decrementAndGet();
+    }
+
+    @Override
+    public void subscribe(SocketChannel socket, ByteChannel channel) {
+        Subscriber subscriber = new Subscriber(socket, channel);
+        try {
+            sampler.execute(() -> join(subscriber));
+        } catch (RejectedExecutionException e) {
+            drop(subscriber);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            sampler.execute(() -> {
+                for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                    drop(subscriber);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Déjà arrêté
+        }
+        sampler.shutdown();
+    }
+
+    public long getSubscribers() { return subscriberCount.get(); }
+    public long getEventsSent() { return eventsSent.get(); }
+
+    private void scheduleTick() {
+        long interval = Math.max(MIN_INTERVAL_MILLIS, config.getStatusStreamInterval());
+        sampler.schedule(this::tick, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Nouvel abonné : état complet d'abord, les deltas suivants s'appliquent dessus
+    private void join(Subscriber subscriber) {
+        try {
+            subscriber.socket.configureBlocking(false);
+        } catch (IOException e) {
+            drop(subscriber);
+            return;
+        }
+        subscribers.add(subscriber);
+
+        // Tous les abonnés partent du même état, celui sur lequel le prochain delta sera calculé
+        if (lastSample.isEmpty()) {
+            lastSample = systemInfo.sample();
+        }
+        String json = toJson(lastSample, Collections.emptyMap());
+        send(subscriber, ("retry: 5000\nevent: snapshot\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void tick() {
+        if (!running) return;
+        try {
+            if (!subscribers.isEmpty()) {
+                Map<String, Long> sample = systemInfo.sample();
+                String delta = toJson(sample, lastSample);
+                lastSample = sample;
+
+                long now = System.currentTimeMillis();
+                byte[] message = null;
+                if (delta != null) {
+                    message = ("event: delta\ndata: " + delta + "\n\n").getBytes(StandardCharsets.UTF_8);
+                } else if (now - lastSentAt >= HEARTBEAT_MILLIS) {
+                    message = HEARTBEAT;
+                }
+                if (message != null) {
+                    lastSentAt = now;
+                }
+
+                // Le même tableau d'octets pour tous ; sans message, on termine les envois en retard
+                for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                    send(subscriber, message);
+                }
+            } else {
+                lastSample = Collections.emptyMap();
+            }
+        } catch (RuntimeException e) {
+            config.logError("Erreur flux de statut: " + e.getMessage());
+        } finally {
+            if (running) {
+                scheduleTick();
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, byte[] message) {
+        if (message != null) {
+            subscriber.backlog.add(ByteBuffer.wrap(message));
+            eventsSent.incrementAndGet();
+        }
+        try {
+            while (!subscriber.backlog.isEmpty()) {
+                ByteBuffer next = subscriber.backlog.peek();
+                subscriber.channel.write(next);
+                if (next.hasRemaining()) break;
+                subscriber.backlog.poll();
+            }
+            if (subscriber.backlog.isEmpty()) {
+                // Termine l'envoi d'un enregistrement TLS resté en attente
+                subscriber.channel.write(EMPTY);
+            }
+        } catch (IOException e) {
+            // Tableau de bord fermé
+            drop(subscriber);
+            return;
+        }
+
+        int pending = 0;
+        for (ByteBuffer buffer : subscriber.backlog) {
+            pending += buffer.remaining();
+        }
+        if (pending > MAX_BACKLOG) {
+            drop(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriberCount.decrementAndGet();
+        try {
+            subscriber.channel.close();
+        } catch (IOException e) {
+            // Ignorer
+        }
+    }
+
+    // Objet JSON des valeurs différentes de la référence, null si rien n'a changé
+    private static String toJson(Map<String, Long> values, Map<String, Long> reference) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            if (entry.getValue().equals(reference.get(entry.getKey()))) continue;
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"');
+            for (int i = 0; i < entry.getKey().length(); i++) {
+                char c = entry.getKey().charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\');
+                }
+                json.append(c);
+            }
+            json.append("\":").append(entry.getValue());
+        }
+        if (json.length() == 1) {
+            return null;
+        }
+        return json.append('}').toString();
+    }
+
+    private static class Subscriber {
+        private final SocketChannel socket;
+        private final ByteChannel channel;
+        // Messages pas encore entièrement écrits, partagés entre abonnés (lecture seule)
+        private final Deque<ByteBuffer> backlog = new ArrayDeque<>();
+
+        Subscriber(SocketChannel socket, ByteChannel channel) {
+            this.socket = socket;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+
+// Gestionnaire dont la réponse reste ouverte (flux Server-Sent Events...).
+// Monté dans les routes à côté des WebHandler : HttpServer envoie les en-têtes avec getContentType(),
+// puis lui confie la connexion. Aucun thread du pool ne reste occupé pendant le flux.
+public interface StreamHandler {
+    String getContentType();
+
+    // Réserve une place avant l'envoi des en-têtes ; faux si le flux est plein (503)
+    boolean reserve();
+
+    // Les en-têtes n'ont pas pu être envoyés après reserve()
+    void cancelReservation();
+
+    // La connexion appartient désormais au gestionnaire, qui la fermera
+    void subscribe(SocketChannel socket, ByteChannel channel);
+}
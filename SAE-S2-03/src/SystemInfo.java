@@ -1,10 +1,24 @@
 import java.io.*;
 import java.nio.file.*;
 import java.text.DecimalFormat;
+import java.util.*;
+import java.util.function.LongSupplier;
 
 public class SystemInfo {
     private DecimalFormat df = new DecimalFormat("#.##");
 
+    // Métriques fournies par le serveur (tampons, connexions...), dans l'ordre d'enregistrement
+    private final Map<String, ServerMetric> serverMetrics = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public void addServerMetric(String key, String label, LongSupplier value) {
+        addServerMetric(key, label, value, true);
+    }
+
+    // sampled=false : affichée sur /status mais absente de sample()
+    public void addServerMetric(String key, String label, LongSupplier value, boolean sampled) {
+        serverMetrics.put(key, new ServerMetric(label, value, sampled));
+    }
+
     public String getStatusHtml() {
         StringBuilder html = new StringBuilder();
         html.append("<!DOCTYPE html>\n");
@@ -118,11 +132,50 @@ public class SystemInfo {
         html.append("<span class='stat-value'>").append(formatUptime(uptime)).append("</span>\n");
         html.append("</div>\n");
 
+        // Métriques du serveur
+        List<ServerMetric> metrics;
+        synchronized (serverMetrics) {
+            metrics = new ArrayList<>(serverMetrics.values());
+        }
+        for (ServerMetric metric : metrics) {
+            html.append("<div class='stat-item'>\n");
+            html.append("<span class='stat-label'>").append(metric.label).append(":</span> ");
+            html.append("<span class='stat-value'>").append(metric.value.getAsLong()).append("</span>\n");
+            html.append("</div>\n");
+        }
+
         html.append("</div>\n</body>\n</html>");
 
         return html.toString();
     }
 
+    // Valeurs numériques de la page de statut, pour le flux /status/stream.
+    // Les commandes ps et who ne sont pas lancées ici : trop coûteuses à chaque échantillon.
+    public Map<String, Long> sample() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        Runtime runtime = Runtime.getRuntime();
+        values.put("memory.free", runtime.freeMemory());
+        values.put("memory.total", runtime.totalMemory());
+        values.put("memory.max", runtime.maxMemory());
+
+        File root = new File("/");
+        values.put("disk.free", root.getFreeSpace());
+        values.put("disk.total", root.getTotalSpace());
+
+        values.put("processors", (long) runtime.availableProcessors());
+        values.put("uptime", java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime() / 1000);
+
+        List<Map.Entry<String, ServerMetric>> metrics;
+        synchronized (serverMetrics) {
+            metrics = new ArrayList<>(serverMetrics.entrySet());
+        }
+        for (Map.Entry<String, ServerMetric> metric : metrics) {
+            if (!metric.getValue().sampled) continue;
+            values.put(metric.getKey(), metric.getValue().value.getAsLong());
+        }
+        return values;
+    }
+
     private String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         int exp = (int) (Math.log(bytes) / Math.log(1024));
@@ -158,4 +211,16 @@ public class SystemInfo {
             return null;
         }
     }
+
+    private static class ServerMetric {
+        private final String label;
+        private final LongSupplier value;
+        private final boolean sampled;
+
+        ServerMetric(String label, LongSupplier value, boolean sampled) {
+            this.label = label;
+            this.value = value;
+            this.sampled = sampled;
+        }
+    }
 }
\ No newline at end of file
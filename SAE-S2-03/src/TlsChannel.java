@@ -0,0 +1,199 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+// Canal chiffré au-dessus d'une socket bloquante, avec un SSLEngine.
+// HttpInput et HttpOutput l'utilisent comme un canal ordinaire : le reste du serveur
+// ne voit que des octets en clair. Les trois tampons viennent du pool et y retournent à la fermeture.
+// Si la socket passe en non bloquant (flux /status/stream, ordonnanceur d'émission), write() garde l'enregistrement
+// chiffré qui n'a pas pu partir et le renvoie à l'appel suivant, même avec un tampon vide.
+public class TlsChannel implements ByteChannel {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    // Données chiffrées reçues et pas encore déchiffrées (mode écriture)
+    private ByteBuffer netIn;
+    // Enregistrement chiffré en cours d'envoi (mode lecture)
+    private ByteBuffer netOut;
+    // Données déchiffrées pas encore lues (mode lecture)
+    private ByteBuffer appIn;
+    private boolean closed = false;
+
+    public TlsChannel(SocketChannel channel, SSLEngine engine) {
+        this.channel = channel;
+        this.engine = engine;
+        this.netIn = BufferPool.acquire(BufferPool.LARGE);
+        this.netOut = BufferPool.acquire(BufferPool.LARGE);
+        this.appIn = BufferPool.acquire(BufferPool.LARGE);
+        this.netOut.flip(); // vides, en mode lecture
+        this.appIn.flip();
+    }
+
+    public SSLEngine getEngine() {
+        return engine;
+    }
+
+    // La connexion continue sur un autre thread (voir BufferPool.detach)
+    public void detachBuffers() {
+        BufferPool.detach(netIn);
+        BufferPool.detach(netOut);
+        BufferPool.detach(appIn);
+    }
+
+    // Négociation complète avant la première lecture
+    public void handshake() throws IOException {
+        engine.beginHandshake();
+        continueHandshake(engine.getHandshakeStatus());
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        while (!appIn.hasRemaining()) {
+            SSLEngineResult result = unwrap();
+            if (result == null || result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                return -1;
+            }
+            // Messages de négociation après coup (mise à jour de clés TLS 1.3)
+            continueHandshake(result.getHandshakeStatus());
+        }
+
+        int n = Math.min(dst.remaining(), appIn.remaining());
+        dst.put(dst.position(), appIn, appIn.position(), n);
+        dst.position(dst.position() + n);
+        appIn.position(appIn.position() + n);
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = 0;
+        while (flushNet() && src.hasRemaining()) {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            netOut.flip();
+            if (result.getStatus() != SSLEngineResult.Status.OK) {
+                throw new SSLException("Écriture TLS impossible: " + result.getStatus());
+            }
+            written += result.bytesConsumed();
+        }
+        return written;
+    }
+
+    // Renvoie l'enregistrement en attente ; faux s'il reste des octets (socket non bloquante pleine)
+    public boolean flush() throws IOException {
+        return flushNet();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    // Envoie close_notify, ferme la socket et rend les tampons au pool
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            engine.closeOutbound();
+            while (flushNet() && !engine.isOutboundDone()) {
+                netOut.clear();
+                engine.wrap(EMPTY, netOut);
+                netOut.flip();
+            }
+        } catch (IOException e) {
+            // Client déjà parti : close_notify perdu
+        } finally {
+            channel.close();
+            BufferPool.release(netIn);
+            BufferPool.release(netOut);
+            BufferPool.release(appIn);
+            netIn = netOut = appIn = null;
+        }
+    }
+
+    private void continueHandshake(SSLEngineResult.HandshakeStatus status) throws IOException {
+        while (true) {
+            switch (status) {
+                case NEED_WRAP:
+                    netOut.clear();
+                    SSLEngineResult result = engine.wrap(EMPTY, netOut);
+                    netOut.flip();
+                    flushNet();
+                    if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("Connexion fermée pendant la négociation");
+                    }
+                    status = result.getHandshakeStatus();
+                    break;
+                case NEED_UNWRAP:
+                case NEED_UNWRAP_AGAIN:
+                    result = unwrap();
+                    if (result == null) {
+                        throw new EOFException("Connexion fermée pendant la négociation");
+                    }
+                    status = result.getHandshakeStatus();
+                    break;
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    status = engine.getHandshakeStatus();
+                    break;
+                default:
+                    // FINISHED ou NOT_HANDSHAKING
+                    return;
+            }
+        }
+    }
+
+    // Déchiffre un enregistrement vers appIn, en lisant la socket si besoin. Null en fin de flux.
+    private SSLEngineResult unwrap() throws IOException {
+        appIn.compact();
+        try {
+            while (true) {
+                netIn.flip();
+                SSLEngineResult result;
+                try {
+                    result = engine.unwrap(netIn, appIn);
+                } finally {
+                    netIn.compact();
+                }
+
+                switch (result.getStatus()) {
+                    case BUFFER_UNDERFLOW:
+                        if (channel.read(netIn) < 0) {
+                            return null;
+                        }
+                        break;
+                    case BUFFER_OVERFLOW:
+                        throw new SSLException("Enregistrement TLS trop grand");
+                    default:
+                        // Enregistrement de négociation consommé sans données : rien à lire encore
+                        if (result.getStatus() == SSLEngineResult.Status.OK && result.bytesProduced() == 0
+                                && result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+                            break;
+                        }
+                        return result;
+                }
+            }
+        } finally {
+            appIn.flip();
+        }
+    }
+
+    // Faux si la socket non bloquante n'a pas tout accepté
+    private boolean flushNet() throws IOException {
+        while (netOut.hasRemaining()) {
+            if (channel.write(netOut) == 0 && !channel.isBlocking()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
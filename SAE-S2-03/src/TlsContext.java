@@ -0,0 +1,99 @@
+import java.io.*;
+import java.nio.channels.SocketChannel;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.*;
+
+// Contexte TLS du port HTTPS : certificat lu depuis le keystore de la configuration,
+// cache de sessions borné et tickets de session pour que les clients qui reviennent
+// évitent une négociation complète. Compte les négociations complètes et reprises.
+public class TlsContext {
+    private static final String[] PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    private static final String ALPN_HTTP_1_1 = "http/1.1";
+
+    private final SSLContext sslContext;
+
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private final AtomicLong failedHandshakes = new AtomicLong();
+    private final AtomicLong fullHandshakeNanos = new AtomicLong();
+    private final AtomicLong resumedHandshakeNanos = new AtomicLong();
+
+    public TlsContext(WebConfig config) throws IOException, GeneralSecurityException {
+        if (config.getTlsKeystore() == null) {
+            throw new IOException("Aucun keystore déclaré dans <tls>");
+        }
+
+        // Propriété lue une seule fois par la JVM, avant la création du premier contexte TLS
+        System.setProperty("jdk.tls.server.enableSessionTicketExtension",
+                String.valueOf(config.isTlsSessionTicketsEnabled()));
+
+        char[] password = config.getTlsKeystorePassword().toCharArray();
+        KeyStore keyStore = KeyStore.getInstance(config.getTlsKeystoreType());
+        try (InputStream in = Files.newInputStream(Paths.get(config.getTlsKeystore()))) {
+            keyStore.load(in, password);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        SSLSessionContext sessions = sslContext.getServerSessionContext();
+        sessions.setSessionCacheSize(config.getTlsSessionCacheSize());
+        sessions.setSessionTimeout(config.getTlsSessionTimeout());
+    }
+
+    // Canal chiffré négocié, prêt pour la lecture de la requête
+    public TlsChannel accept(SocketChannel socket) throws IOException {
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setProtocols(PROTOCOLS);
+        engine.setSSLParameters(parameters);
+        // ALPN : seul HTTP/1.1 est servi ; sans correspondance, pas d'ALPN plutôt qu'un refus
+        engine.setHandshakeApplicationProtocolSelector((sslEngine, offered) ->
+                offered.contains(ALPN_HTTP_1_1) ? ALPN_HTTP_1_1 : "");
+
+        TlsChannel channel = new TlsChannel(socket, engine);
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            channel.handshake();
+        } catch (IOException e) {
+            failedHandshakes.incrementAndGet();
+            channel.close();
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Une session reprise a été créée lors d'une connexion précédente
+        if (engine.getSession().getCreationTime() < startMillis) {
+            resumedHandshakes.incrementAndGet();
+            resumedHandshakeNanos.addAndGet(elapsed);
+        } else {
+            fullHandshakes.incrementAndGet();
+            fullHandshakeNanos.addAndGet(elapsed);
+        }
+        return channel;
+    }
+
+    public long getFullHandshakes() { return fullHandshakes.get(); }
+    public long getResumedHandshakes() { return resumedHandshakes.get(); }
+    public long getFailedHandshakes() { return failedHandshakes.get(); }
+
+    // Durées moyennes en microsecondes
+    public long getAverageFullHandshakeMicros() {
+        return average(fullHandshakeNanos.get(), fullHandshakes.get());
+    }
+
+    public long getAverageResumedHandshakeMicros() {
+        return average(resumedHandshakeNanos.get(), resumedHandshakes.get());
+    }
+
+    private static long average(long totalNanos, long count) {
+        return count == 0 ? 0 : totalNanos / count / 1000;
+    }
+}
@@ -2,11 +2,14 @@ import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.file.*;
-import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import javax.xml.parsers.*;
 import org.w3c.dom.*;
 
+// Configuration lue depuis myweb.conf. Une instance n'est plus modifiée après sa construction :
+// un rechargement crée une nouvelle instance, publiée d'un bloc par HttpServer.
 public class WebConfig {
     private int port = 8080;
     private String documentRoot = System.getProperty("user.dir");
@@ -14,6 +17,39 @@ public class WebConfig {
     private String accessLogPath = null;
     private String errorLogPath = null;
 
+    // Mesure des phases des requêtes
+    private boolean serverTiming = false;
+    private long slowRequestThreshold = 0; // en millisecondes, 0 = désactivé
+    private String slowLogPath = null;
+
+    // Détection des fuites de tampons réseau
+    private boolean bufferDebug = false;
+
+    // Ordonnanceur d'émission des grosses réponses
+    private long egressThreshold = 1024 * 1024; // en octets, 0 = désactivé
+    private long egressConnectionRate = 0;      // en octets/s, 0 = illimité
+    private long egressGlobalRate = 0;          // en octets/s, 0 = illimité
+    private int egressChunkSize = 64 * 1024;
+
+    // Gestionnaires Java déclarés dans la configuration
+    private List<HandlerMount> handlerMounts = new ArrayList<>();
+
+    // HTTPS (port 0 = désactivé)
+    private int tlsPort = 0;
+    private String tlsKeystore = null;
+    private String tlsKeystorePassword = "";
+    private String tlsKeystoreType = "PKCS12";
+    private int tlsSessionCacheSize = 10000;
+    private int tlsSessionTimeout = 86400;      // en secondes
+    private boolean tlsSessionTickets = true;
+
+    // Flux /status/stream
+    private long statusStreamInterval = 2000;   // en millisecondes
+    private int statusStreamMaxClients = 64;
+
+    // Rechargement automatique quand myweb.conf est modifié
+    private boolean watchConfig = false;
+
     // Sécurité
     private List<NetworkRule> acceptRules = new ArrayList<>();
     private List<NetworkRule> rejectRules = new ArrayList<>();
@@ -22,15 +58,32 @@ public class WebConfig {
 
     private PrintWriter accessLogWriter;
     private PrintWriter errorLogWriter;
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
+    private PrintWriter slowLogWriter;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z");
 
     public WebConfig(String configFile) throws Exception {
-        loadConfiguration(configFile);
+        this(configFile, false);
+    }
+
+    // Pour un rechargement : un fichier absent (supprimé puis réécrit par un éditeur) est une
+    // erreur, pas une configuration par défaut qui remplacerait la configuration active
+    public static WebConfig loadExisting(String configFile) throws Exception {
+        return new WebConfig(configFile, true);
+    }
+
+    private WebConfig(String configFile, boolean required) throws Exception {
+        loadConfiguration(configFile, required);
+        acceptRules = Collections.unmodifiableList(acceptRules);
+        rejectRules = Collections.unmodifiableList(rejectRules);
+        handlerMounts = Collections.unmodifiableList(handlerMounts);
         initializeLoggers();
     }
 
-    private void loadConfiguration(String configFile) throws Exception {
+    private void loadConfiguration(String configFile, boolean required) throws Exception {
         File file = new File(configFile);
+        if (required && !file.canRead()) {
+            throw new FileNotFoundException("Fichier de configuration absent ou illisible: " + configFile);
+        }
         if (!file.exists()) {
             System.out.println("[config] Fichier de configuration non trouvé, utilisation des valeurs par défaut");
             return;
@@ -114,6 +167,156 @@ public class WebConfig {
         if (errorLogNodes.getLength() > 0) {
             this.errorLogPath = errorLogNodes.item(0).getTextContent().trim();
         }
+
+        // Timing
+        NodeList timingNodes = doc.getElementsByTagName("timing");
+        if (timingNodes.getLength() > 0) {
+            Element timingElement = (Element) timingNodes.item(0);
+
+            NodeList serverTimingNodes = timingElement.getElementsByTagName("servertiming");
+            if (serverTimingNodes.getLength() > 0) {
+                String value = serverTimingNodes.item(0).getTextContent().trim();
+                this.serverTiming = value.equalsIgnoreCase("on");
+            }
+
+            NodeList thresholdNodes = timingElement.getElementsByTagName("slowthreshold");
+            if (thresholdNodes.getLength() > 0) {
+                this.slowRequestThreshold = Long.parseLong(thresholdNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList slowLogNodes = timingElement.getElementsByTagName("slowlog");
+            if (slowLogNodes.getLength() > 0) {
+                this.slowLogPath = slowLogNodes.item(0).getTextContent().trim();
+            }
+        }
+
+        // Tampons
+        NodeList bufferNodes = doc.getElementsByTagName("buffers");
+        if (bufferNodes.getLength() > 0) {
+            Element bufferElement = (Element) bufferNodes.item(0);
+            NodeList debugNodes = bufferElement.getElementsByTagName("debug");
+            if (debugNodes.getLength() > 0) {
+                this.bufferDebug = debugNodes.item(0).getTextContent().trim().equalsIgnoreCase("on");
+            }
+        }
+
+        // Egress
+        NodeList egressNodes = doc.getElementsByTagName("egress");
+        if (egressNodes.getLength() > 0) {
+            Element egressElement = (Element) egressNodes.item(0);
+
+            NodeList thresholdNodes = egressElement.getElementsByTagName("threshold");
+            if (thresholdNodes.getLength() > 0) {
+                this.egressThreshold = Long.parseLong(thresholdNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList connectionRateNodes = egressElement.getElementsByTagName("connectionrate");
+            if (connectionRateNodes.getLength() > 0) {
+                this.egressConnectionRate = Long.parseLong(connectionRateNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList globalRateNodes = egressElement.getElementsByTagName("globalrate");
+            if (globalRateNodes.getLength() > 0) {
+                this.egressGlobalRate = Long.parseLong(globalRateNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList chunkNodes = egressElement.getElementsByTagName("chunk");
+            if (chunkNodes.getLength() > 0) {
+                this.egressChunkSize = Integer.parseInt(chunkNodes.item(0).getTextContent().trim());
+            }
+
+            // Un morceau nul ferait tourner l'ordonnanceur à vide, un négatif ferait échouer transferTo
+            if (egressChunkSize <= 0) {
+                throw new IllegalArgumentException("<egress><chunk> doit être positif: " + egressChunkSize);
+            }
+            if (egressThreshold < 0 || egressConnectionRate < 0 || egressGlobalRate < 0) {
+                throw new IllegalArgumentException("<egress> : seuil et débits ne peuvent pas être négatifs");
+            }
+        }
+
+        // Handlers
+        NodeList handlerNodes = doc.getElementsByTagName("handler");
+        for (int i = 0; i < handlerNodes.getLength(); i++) {
+            Element handlerElement = (Element) handlerNodes.item(i);
+            String path = handlerElement.getAttribute("path").trim();
+            String className = handlerElement.getAttribute("class").trim();
+            if (!path.isEmpty() && !className.isEmpty()) {
+                handlerMounts.add(new HandlerMount(path, className));
+            }
+        }
+
+        // TLS
+        NodeList tlsNodes = doc.getElementsByTagName("tls");
+        if (tlsNodes.getLength() > 0) {
+            Element tlsElement = (Element) tlsNodes.item(0);
+            if (tlsElement.hasAttribute("port")) {
+                this.tlsPort = Integer.parseInt(tlsElement.getAttribute("port").trim());
+            }
+
+            NodeList keystoreNodes = tlsElement.getElementsByTagName("keystore");
+            if (keystoreNodes.getLength() > 0) {
+                this.tlsKeystore = keystoreNodes.item(0).getTextContent().trim();
+            }
+
+            NodeList passwordNodes = tlsElement.getElementsByTagName("password");
+            if (passwordNodes.getLength() > 0) {
+                this.tlsKeystorePassword = passwordNodes.item(0).getTextContent().trim();
+            }
+
+            NodeList typeNodes = tlsElement.getElementsByTagName("type");
+            if (typeNodes.getLength() > 0) {
+                this.tlsKeystoreType = typeNodes.item(0).getTextContent().trim();
+            }
+
+            NodeList sessionCacheNodes = tlsElement.getElementsByTagName("sessioncache");
+            if (sessionCacheNodes.getLength() > 0) {
+                this.tlsSessionCacheSize = Integer.parseInt(sessionCacheNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList sessionTimeoutNodes = tlsElement.getElementsByTagName("sessiontimeout");
+            if (sessionTimeoutNodes.getLength() > 0) {
+                this.tlsSessionTimeout = Integer.parseInt(sessionTimeoutNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList ticketNodes = tlsElement.getElementsByTagName("tickets");
+            if (ticketNodes.getLength() > 0) {
+                this.tlsSessionTickets = ticketNodes.item(0).getTextContent().trim().equalsIgnoreCase("on");
+            }
+
+            // SSLSessionContext refuse les valeurs négatives : les rejeter ici, y compris au rechargement
+            if (tlsPort < 0 || tlsPort > 65535) {
+                throw new IllegalArgumentException("<tls port> invalide: " + tlsPort);
+            }
+            if (tlsSessionCacheSize < 0 || tlsSessionTimeout < 0) {
+                throw new IllegalArgumentException("<tls> : sessioncache et sessiontimeout ne peuvent pas être négatifs");
+            }
+        }
+
+        // Status stream
+        NodeList statusStreamNodes = doc.getElementsByTagName("statusstream");
+        if (statusStreamNodes.getLength() > 0) {
+            Element statusStreamElement = (Element) statusStreamNodes.item(0);
+
+            NodeList intervalNodes = statusStreamElement.getElementsByTagName("interval");
+            if (intervalNodes.getLength() > 0) {
+                this.statusStreamInterval = Long.parseLong(intervalNodes.item(0).getTextContent().trim());
+            }
+
+            NodeList maxClientsNodes = statusStreamElement.getElementsByTagName("maxclients");
+            if (maxClientsNodes.getLength() > 0) {
+                this.statusStreamMaxClients = Integer.parseInt(maxClientsNodes.item(0).getTextContent().trim());
+            }
+        }
+
+        // Reload
+        NodeList reloadNodes = doc.getElementsByTagName("reload");
+        if (reloadNodes.getLength() > 0) {
+            Element reloadElement = (Element) reloadNodes.item(0);
+            NodeList watchNodes = reloadElement.getElementsByTagName("watch");
+            if (watchNodes.getLength() > 0) {
+                this.watchConfig = watchNodes.item(0).getTextContent().trim().equalsIgnoreCase("on");
+            }
+        }
     }
 
     private void initializeLoggers() throws IOException {
@@ -128,9 +331,28 @@ public class WebConfig {
             Files.createDirectories(logPath.getParent());
             errorLogWriter = new PrintWriter(new FileWriter(errorLogPath, true));
         }
+
+        if (slowLogPath != null) {
+            Path logPath = Paths.get(slowLogPath);
+            Files.createDirectories(logPath.getParent());
+            slowLogWriter = new PrintWriter(new FileWriter(slowLogPath, true));
+        }
     }
 
     public boolean isIPAllowed(String clientIP) {
+        AccessControlEvent event = new AccessControlEvent();
+        event.begin();
+        boolean allowed = checkIPAllowed(clientIP, event);
+        event.end();
+        if (event.shouldCommit()) {
+            event.clientAddress = clientIP;
+            event.allowed = allowed;
+            event.commit();
+        }
+        return allowed;
+    }
+
+    private boolean checkIPAllowed(String clientIP, AccessControlEvent event) {
         try {
             InetAddress clientAddr = InetAddress.getByName(clientIP);
 
@@ -138,6 +360,7 @@ public class WebConfig {
                 // Vérifier d'abord les règles d'acceptation
                 for (NetworkRule rule : acceptRules) {
                     if (rule.matches(clientAddr)) {
+                        event.rule = rule.getRule();
                         logAccess(clientIP + " - ACCEPTED by rule: " + rule.getRule());
                         return true;
                     }
@@ -146,6 +369,7 @@ public class WebConfig {
                 // Puis les règles de rejet
                 for (NetworkRule rule : rejectRules) {
                     if (rule.matches(clientAddr)) {
+                        event.rule = rule.getRule();
                         logAccess(clientIP + " - REJECTED by rule: " + rule.getRule());
                         return false;
                     }
@@ -154,6 +378,7 @@ public class WebConfig {
                 // Vérifier d'abord les règles de rejet
                 for (NetworkRule rule : rejectRules) {
                     if (rule.matches(clientAddr)) {
+                        event.rule = rule.getRule();
                         logAccess(clientIP + " - REJECTED by rule: " + rule.getRule());
                         return false;
                     }
@@ -162,6 +387,7 @@ public class WebConfig {
                 // Puis les règles d'acceptation
                 for (NetworkRule rule : acceptRules) {
                     if (rule.matches(clientAddr)) {
+                        event.rule = rule.getRule();
                         logAccess(clientIP + " - ACCEPTED by rule: " + rule.getRule());
                         return true;
                     }
@@ -169,6 +395,7 @@ public class WebConfig {
             }
 
             // Aucune règle ne correspond, utiliser la valeur par défaut
+            event.rule = "default";
             return defaultAccept;
 
         } catch (UnknownHostException e) {
@@ -178,7 +405,7 @@ public class WebConfig {
     }
 
     public void logAccess(String message) {
-        String timestamp = dateFormat.format(new Date());
+        String timestamp = DATE_FORMAT.format(ZonedDateTime.now());
         String logEntry = "[" + timestamp + "] " + message;
 
         System.out.println(logEntry);
@@ -190,7 +417,7 @@ public class WebConfig {
     }
 
     public void logError(String message) {
-        String timestamp = dateFormat.format(new Date());
+        String timestamp = DATE_FORMAT.format(ZonedDateTime.now());
         String logEntry = "[" + timestamp + "] ERROR: " + message;
 
         System.err.println(logEntry);
@@ -201,6 +428,18 @@ public class WebConfig {
         }
     }
 
+    public void logSlowRequest(String message) {
+        // Sans fichier dédié, les requêtes lentes vont dans le journal d'erreurs
+        if (slowLogWriter == null) {
+            logError("SLOW: " + message);
+            return;
+        }
+
+        String timestamp = DATE_FORMAT.format(ZonedDateTime.now());
+        slowLogWriter.println("[" + timestamp + "] " + message);
+        slowLogWriter.flush();
+    }
+
     public void close() {
         if (accessLogWriter != null) {
             accessLogWriter.close();
@@ -208,12 +447,48 @@ public class WebConfig {
         if (errorLogWriter != null) {
             errorLogWriter.close();
         }
+        if (slowLogWriter != null) {
+            slowLogWriter.close();
+        }
     }
 
     // Getters
     public int getPort() { return port; }
     public String getDocumentRoot() { return documentRoot; }
     public boolean allowDirectoryListing() { return allowIndexes; }
+    public boolean isServerTimingEnabled() { return serverTiming; }
+    public long getSlowRequestThreshold() { return slowRequestThreshold; }
+    public boolean isRequestTimingEnabled() { return serverTiming || slowRequestThreshold > 0; }
+    public boolean isBufferDebugEnabled() { return bufferDebug; }
+    public long getEgressThreshold() { return egressThreshold; }
+    public long getEgressConnectionRate() { return egressConnectionRate; }
+    public long getEgressGlobalRate() { return egressGlobalRate; }
+    public int getEgressChunkSize() { return egressChunkSize; }
+    public List<HandlerMount> getHandlerMounts() { return handlerMounts; }
+    public boolean isConfigWatchEnabled() { return watchConfig; }
+    public long getStatusStreamInterval() { return statusStreamInterval; }
+    public int getStatusStreamMaxClients() { return statusStreamMaxClients; }
+    public int getTlsPort() { return tlsPort; }
+    public String getTlsKeystore() { return tlsKeystore; }
+    public String getTlsKeystorePassword() { return tlsKeystorePassword; }
+    public String getTlsKeystoreType() { return tlsKeystoreType; }
+    public int getTlsSessionCacheSize() { return tlsSessionCacheSize; }
+    public int getTlsSessionTimeout() { return tlsSessionTimeout; }
+    public boolean isTlsSessionTicketsEnabled() { return tlsSessionTickets; }
+
+    // Gestionnaire Java monté sur un chemin
+    public static class HandlerMount {
+        private final String path;
+        private final String className;
+
+        public HandlerMount(String path, String className) {
+            this.path = path;
+            this.className = className;
+        }
+
+        public String getPath() { return path; }
+        public String getClassName() { return className; }
+    }
 
     // Classe interne pour gérer les règles réseau
     private static class NetworkRule {
@@ -0,0 +1,14 @@
+// Gestionnaire de requêtes exécuté dans le serveur, sans créer de processus.
+// Déclaré dans myweb.conf (<handler path="..." class="..."/>) ou par ServiceLoader
+// (fichier META-INF/services/WebHandler), il est monté sur un ou plusieurs chemins :
+//   /api/users          chemin exact
+//   /api/users/{id}     segment variable, lu avec request.getPathParam("id")
+//   /api/*              préfixe : tout ce qui est sous /api (reste dans getPathParam("*"))
+public interface WebHandler {
+    // Chemins utilisés quand le gestionnaire est trouvé par ServiceLoader
+    default String[] getRoutes() {
+        return new String[0];
+    }
+
+    void handle(WebRequest request, WebResponse response) throws Exception;
+}
@@ -0,0 +1,47 @@
+import java.util.*;
+
+// Requête transmise à un WebHandler
+public class WebRequest {
+    private final String method;
+    private final String path;
+    private final String queryString;
+    private final Map<String, String> headers;
+    private final Map<String, String> pathParams;
+    private final String body;
+    private final String clientIP;
+    private Map<String, String> queryParams;
+
+    public WebRequest(String method, String path, String queryString, Map<String, String> headers,
+                      Map<String, String> pathParams, String body, String clientIP) {
+        this.method = method;
+        this.path = path;
+        this.queryString = queryString;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.pathParams = Collections.unmodifiableMap(pathParams);
+        this.body = body;
+        this.clientIP = clientIP;
+    }
+
+    public String getMethod() { return method; }
+    public String getPath() { return path; }
+    public String getQueryString() { return queryString; }
+    public String getBody() { return body; }
+    public String getClientIP() { return clientIP; }
+    public Map<String, String> getPathParams() { return pathParams; }
+
+    // Nom d'en-tête insensible à la casse
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public String getPathParam(String name) {
+        return pathParams.get(name);
+    }
+
+    public String getQueryParam(String name) {
+        if (queryParams == null) {
+            queryParams = HttpServer.parseQueryString(queryString);
+        }
+        return queryParams.get(name);
+    }
+}
@@ -0,0 +1,68 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Réponse remplie par un WebHandler, envoyée par le serveur une fois le gestionnaire terminé
+public class WebResponse {
+    private int status = 200;
+    private String contentType = "text/html; charset=utf-8";
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final StringBuilder text = new StringBuilder();
+    private byte[] bytes;
+
+    // Code HTTP à trois chiffres ; une erreur ici fait répondre 500 par le serveur
+    public void setStatus(int status) {
+        if (status < 100 || status > 599) {
+            throw new IllegalArgumentException("Code de statut invalide: " + status);
+        }
+        this.status = status;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public void write(CharSequence content) {
+        text.append(content);
+    }
+
+    // Corps binaire, remplace le texte écrit avec write()
+    public void setBody(byte[] body) {
+        this.bytes = body;
+    }
+
+    public int getStatus() { return status; }
+    public String getContentType() { return contentType; }
+    public Map<String, String> getHeaders() { return headers; }
+
+    public byte[] getBody() {
+        return bytes != null ? bytes : text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getStatusLine() {
+        return status + " " + reasonPhrase(status);
+    }
+
+    private static String reasonPhrase(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 500: return "Internal Server Error";
+            case 503: return "Service Unavailable";
+            default: return "Status";
+        }
+    }
+}